@@ -0,0 +1,165 @@
+/*
+ * This file is part of SimpleTextCrypt.
+ * Copyright (c) 2015-2020, Aidin Gharibnavaz <aidin@syndes.com>
+ *
+ * SimpleTextCrypt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SimpleTextCrypt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SimpleTextCrypt.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.syndes.javacomponents;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.core.content.FileProvider;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+
+/*
+ * Clipboard entries too large for a String.
+ *
+ * The clipboard moves a text clip through Binder in one transaction, which is limited to about
+ * 1 MB; a larger clip fails or stalls both processes. Texts above THRESHOLD_CHARS are written
+ * to a file in the cache instead, and the clipboard gets a content URI served by FileProvider,
+ * which readers open as a stream. Pasting such a URI reads it as a stream too.
+ *
+ * The files are deleted when a new clip is published and by clear(). When the app locks,
+ * MainActivity calls clearPlaintext(): the plaintext must not stay in the cache after that,
+ * while a ciphertext clip isn't secret and may still be waiting to be pasted in another app.
+ */
+public final class ClipStore {
+
+    // Well below the Binder limit: a clip is sent as UTF-16, two bytes a character.
+    public static final int THRESHOLD_CHARS = 128 * 1024;
+
+    // Pasting more than this would not fit in memory as a text anyway.
+    private static final int MAX_PASTE_CHARS = 32 * 1024 * 1024;
+
+    private static final String DIRECTORY = "clips";
+    // Clip files holding ciphertext (Crypter2 dense output); every other clip may be plaintext.
+    private static final String CIPHERTEXT_PREFIX = "cipher-";
+    private static final String AUTHORITY_SUFFIX = ".clips";
+    private static final int BUFFER_CHARS = 64 * 1024;
+
+    private ClipStore() {
+    }
+
+    /*
+     * Writes the text to a new clip file and returns its content URI. Earlier clips are deleted.
+     * Does file I/O; call off the main thread.
+     */
+    public static Uri publish(Context context, String text) throws IOException {
+        clear(context);
+        File directory = directory(context);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Couldn't create " + directory);
+        }
+
+        byte[] name = new byte[8];
+        new SecureRandom().nextBytes(name);
+        String prefix = Crypter2.isDense(text) ? CIPHERTEXT_PREFIX : "clip-";
+        File file = new File(directory, prefix + toHex(name) + ".txt");
+
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8),
+                BUFFER_CHARS);
+        try {
+            for (int offset = 0; offset < text.length(); offset += BUFFER_CHARS) {
+                writer.write(text, offset, Math.min(BUFFER_CHARS, text.length() - offset));
+            }
+        } catch (IOException error) {
+            writer.close();
+            file.delete();
+            throw error;
+        }
+        writer.close();
+
+        return FileProvider.getUriForFile(context,
+                context.getPackageName() + AUTHORITY_SUFFIX, file);
+    }
+
+    /*
+     * Reads a text clip given as a content URI. Does I/O; call off the main thread.
+     */
+    public static String read(Context context, Uri uri) throws IOException {
+        InputStream in = context.getContentResolver().openInputStream(uri);
+        if (in == null) {
+            throw new java.io.FileNotFoundException(uri.toString());
+        }
+
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+        try {
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[BUFFER_CHARS];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                if (text.length() + read > MAX_PASTE_CHARS) {
+                    throw new IOException("The clipboard content is too large");
+                }
+                text.append(buffer, 0, read);
+            }
+            return text.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /*
+     * Deletes all clip files; URIs published earlier stop working.
+     */
+    public static void clear(Context context) {
+        File[] files = directory(context).listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /*
+     * Deletes the clip files that may hold plaintext; ciphertext clips stay valid.
+     */
+    public static void clearPlaintext(Context context) {
+        File[] files = directory(context).listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.getName().startsWith(CIPHERTEXT_PREFIX)) {
+                file.delete();
+            }
+        }
+    }
+
+    private static File directory(Context context) {
+        return new File(context.getCacheDir(), DIRECTORY);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -22,9 +22,14 @@ package com.syndes.javacomponents;
  */
 public class Constants {
 
+    // Settings used to live in these SharedPreferences; now only migrated from them.
     public static final String PREFERENCES_KEY = "com.syndes.JavaComponents.Preferences";
+    public static final String SETTINGS_FILE_NAME = "settings.bin";
+    public static final String SETTINGS_RECORD_KEY = "SettingsRecordKey";
     public static final String ENCRYPTION_KEY_SETTINGS_KEY = "EncryptionKeySettingsKey";
     public static final String PASSCODE_SETTINGS_KEY = "PasscodeSettingsKey";
     public static final String LOCK_TIMEOUT_SETTINGS_KEY = "LockTimeoutSettingsKey";
+    public static final String KDF_ITERATIONS_SETTINGS_KEY = "KdfIterationsSettingsKey";
+    public static final String KDF_SCRYPT_COST_SETTINGS_KEY = "KdfScryptCostSettingsKey";
     public static final String DEFAULT_PASSCODE = "1111";
 }
@@ -0,0 +1,227 @@
+/*
+ * This file is part of SimpleTextCrypt.
+ * Copyright (c) 2015-2020, Aidin Gharibnavaz <aidin@syndes.com>
+ *
+ * SimpleTextCrypt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SimpleTextCrypt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SimpleTextCrypt.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.syndes.javacomponents;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Runs Crypter/Crypter2 work off the main thread.
+ *
+ * All instances share one small worker pool. Each instance is a "lane": submitting a
+ * new job supersedes the previous one of the same lane, so a result that is no longer wanted
+ * (the user pressed another button meanwhile) is never delivered.
+ * Results, errors and progress are always delivered on the main thread.
+ */
+public class CryptoExecutor {
+
+    /*
+     * The work to run on a worker thread.
+     */
+    public interface Task<T> {
+        T run(Progress progress) throws Exception;
+    }
+
+    /*
+     * Receives the outcome of a task on the main thread.
+     */
+    public interface Callback<T> {
+        void onProgress(int percent);
+
+        void onResult(T result);
+
+        void onError(Exception error);
+    }
+
+    /*
+     * Handed to a running task, so it can report progress and notice cancellation.
+     * It is a Kdf.Progress, so a task can pass it straight to Crypter and CryptoPipeline.
+     */
+    public interface Progress extends Kdf.Progress {
+    }
+
+    private static final int POOL_SIZE =
+            Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+    private static final ThreadPoolExecutor POOL = new ThreadPoolExecutor(
+            POOL_SIZE, POOL_SIZE,
+            30, TimeUnit.SECONDS,
+            // Unbounded: a queued job is never dropped, or its callback would never run and its
+            // lane would stay busy. Each lane has at most one live job, so the queue stays short.
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger(1);
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "crypto-" + count.getAndIncrement());
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }
+            });
+
+    static {
+        POOL.allowCoreThreadTimeOut(true);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Job<?> current;
+
+    /*
+     * Starts the task on the worker pool. The previous job of this lane, if any, is cancelled.
+     * Must be called on the main thread.
+     */
+    public <T> Job<T> submit(Task<T> task, final Callback<T> callback) {
+        cancel();
+        Job<T> job = new Job<>(task, callback);
+        current = job;
+        try {
+            job.future = POOL.submit(job);
+        } catch (final RejectedExecutionException error) {
+            // Still reported through the callback, so the caller's progress UI is cleared.
+            job.deliver(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onError(error);
+                }
+            });
+        }
+        return job;
+    }
+
+    /*
+     * Cancels the running job of this lane. Its result will never be delivered.
+     * Must be called on the main thread.
+     */
+    public void cancel() {
+        if (current != null) {
+            current.cancel();
+            current = null;
+        }
+    }
+
+    /*
+     * True while a job of this lane is queued or running.
+     */
+    public boolean isBusy() {
+        return current != null;
+    }
+
+    /*
+     * Runs the given work on the shared pool without any result delivery.
+     * Meant for fire-and-forget background chores.
+     */
+    public static void execute(Runnable runnable) {
+        POOL.execute(runnable);
+    }
+
+    /*
+     * A submitted task.
+     */
+    public final class Job<T> implements Runnable, Progress {
+
+        private final Task<T> task;
+        private final Callback<T> callback;
+        private volatile boolean cancelled;
+        private volatile Future<?> future;
+
+        private Job(Task<T> task, Callback<T> callback) {
+            this.task = task;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+
+            try {
+                final T result = task.run(this);
+                deliver(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onResult(result);
+                    }
+                });
+            } catch (final Exception error) {
+                deliver(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onError(error);
+                    }
+                });
+            }
+        }
+
+        @Override
+        public void publish(final int percent) {
+            if (cancelled) {
+                return;
+            }
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (isCurrent()) {
+                        callback.onProgress(percent);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled || Thread.currentThread().isInterrupted();
+        }
+
+        public void cancel() {
+            cancelled = true;
+            Future<?> f = future;
+            if (f != null) {
+                f.cancel(true);
+            }
+        }
+
+        private boolean isCurrent() {
+            return !cancelled && current == this;
+        }
+
+        /*
+         * Posts the outcome to the main thread, dropping it if a newer job superseded this one.
+         */
+        private void deliver(final Runnable outcome) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!isCurrent()) {
+                        return;
+                    }
+                    current = null;
+                    outcome.run();
+                }
+            });
+        }
+    }
+}
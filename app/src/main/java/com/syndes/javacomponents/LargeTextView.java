@@ -0,0 +1,177 @@
+/*
+ * This file is part of SimpleTextCrypt.
+ * Copyright (c) 2015-2020, Aidin Gharibnavaz <aidin@syndes.com>
+ *
+ * SimpleTextCrypt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SimpleTextCrypt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SimpleTextCrypt.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.syndes.javacomponents;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Read-only view for texts too large for an EditText.
+ *
+ * An EditText lays out and measures its whole text, so a multi-megabyte result (kanji
+ * ciphertexts especially) freezes the UI for seconds. Here the text is kept as a list of
+ * chunks of at most CHUNK_CHARS characters, and the ListView only creates and lays out
+ * the rows that are on screen. Scrolling costs the same for any text size.
+ *
+ * Text can be appended while it is shown, e.g. as a streaming decryption produces it;
+ * only the last chunk is rebuilt. Must be used on the main thread.
+ */
+public class LargeTextView extends ListView {
+
+    // Small enough to lay out a row within a frame, large enough to keep the row count low.
+    private static final int CHUNK_CHARS = 2048;
+
+    private final List<String> chunks = new ArrayList<>();
+    private int length = 0;
+
+    private final BaseAdapter adapter = new BaseAdapter() {
+        @Override
+        public int getCount() {
+            return chunks.size();
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return chunks.get(position);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            TextView row = (TextView) convertView;
+            if (row == null) {
+                row = new TextView(getContext());
+                row.setTextSize(TypedValue.COMPLEX_UNIT_SP, 18);
+            }
+            // A row that ends a line is followed by the next row anyway.
+            String chunk = chunks.get(position);
+            row.setText(chunk.endsWith("\n") ? chunk.substring(0, chunk.length() - 1) : chunk);
+            return row;
+        }
+    };
+
+    public LargeTextView(Context context) {
+        super(context);
+        init();
+    }
+
+    public LargeTextView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    public LargeTextView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init();
+    }
+
+    private void init() {
+        setDivider(null);
+        setDividerHeight(0);
+        setFastScrollEnabled(true);
+        setAdapter(adapter);
+    }
+
+    /*
+     * Replaces the whole text.
+     */
+    public void setText(CharSequence text) {
+        chunks.clear();
+        length = 0;
+        append(text);
+        setSelection(0);
+    }
+
+    /*
+     * Adds text to the end. The last chunk is merged with the new text, so many small appends
+     * don't leave many small rows behind.
+     */
+    public void append(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            adapter.notifyDataSetChanged();
+            return;
+        }
+
+        StringBuilder tail = new StringBuilder();
+        if (!chunks.isEmpty()) {
+            tail.append(chunks.remove(chunks.size() - 1));
+        }
+        tail.append(text);
+        length += text.length();
+
+        int start = 0;
+        while (tail.length() - start > CHUNK_CHARS) {
+            int end = chunkEnd(tail, start);
+            chunks.add(tail.substring(start, end));
+            start = end;
+        }
+        chunks.add(tail.substring(start));
+        adapter.notifyDataSetChanged();
+    }
+
+    /*
+     * Where the chunk starting at start should end: after the last line break of its second half
+     * if there is one, so lines aren't split between rows; never inside a surrogate pair.
+     */
+    private static int chunkEnd(CharSequence text, int start) {
+        int end = start + CHUNK_CHARS;
+        for (int i = end - 1; i >= start + CHUNK_CHARS / 2; i--) {
+            if (text.charAt(i) == '\n') {
+                return i + 1;
+            }
+        }
+        if (Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    public void clear() {
+        chunks.clear();
+        length = 0;
+        adapter.notifyDataSetChanged();
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /*
+     * The whole text as one string. Costs a copy of the text; meant for copy and encrypt/decrypt.
+     */
+    public String getText() {
+        StringBuilder text = new StringBuilder(length);
+        for (String chunk : chunks) {
+            text.append(chunk);
+        }
+        return text.toString();
+    }
+}
@@ -41,6 +41,7 @@ public class LockActivity extends AppCompatActivity {
     private static final String PREFS_NAME = "AppPrefs";
     private static final String PREF_THEME = "theme";
     private static final String PREF_LANGUAGE = "language";
+    private final CryptoExecutor unlockLane = new CryptoExecutor();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -64,6 +65,14 @@ public class LockActivity extends AppCompatActivity {
                             WindowManager.LayoutParams.FLAG_SECURE);
         setContentView(R.layout.activity_lock);
 
+        Warmup.start(this);
+        SettingsManager.getInstance().applyKdfCalibration(this);
+
+        String storeWarning = SettingsManager.getInstance().takeStoreWarning(this);
+        if (storeWarning != null) {
+            Utilities.showErrorMessage(storeWarning, this);
+        }
+
         // Handling pressing Enter key on the keyboard. It should automatically unlock the app.
         ((EditText)findViewById(R.id.passcodeEditText)).setOnEditorActionListener(
                 new TextView.OnEditorActionListener() {
@@ -93,27 +102,50 @@ public class LockActivity extends AppCompatActivity {
 
     private void unlock() {
         EditText passcodeBox = (EditText)findViewById(R.id.passcodeEditText);
-        String passcode = passcodeBox.getText().toString();
+        final String passcode = passcodeBox.getText().toString();
 
         // Clearing passcode text box.
         passcodeBox.setText("");
 
-        String savedPasscode;
-        try {
-            savedPasscode = SettingsManager.getInstance().tryGetPasscode(passcode, this);
-        } catch (Exception error) {
-            // Any other errors.
-            Utilities.showErrorMessage(error.getMessage(), this);
-            return;
-        }
+        // Checking the passcode decrypts the settings: a full KDF run, so it's done in the background.
+        final Button unlockButton = (Button)findViewById(R.id.unlockButton);
+        unlockButton.setEnabled(false);
+        unlockLane.submit(new CryptoExecutor.Task<String>() {
+            @Override
+            public String run(CryptoExecutor.Progress progress) throws Exception {
+                return SettingsManager.getInstance().tryGetPasscode(passcode, LockActivity.this);
+            }
+        }, new CryptoExecutor.Callback<String>() {
+            @Override
+            public void onProgress(int percent) {
+            }
 
-        if (savedPasscode.compareTo(passcode) != 0) {
-            Utilities.showErrorMessage(getString(R.string.wrong_passcode_error), this);
-            return;
-        }
+            @Override
+            public void onResult(String savedPasscode) {
+                unlockButton.setEnabled(true);
+                if (savedPasscode.compareTo(passcode) != 0) {
+                    Utilities.showErrorMessage(getString(R.string.wrong_passcode_error), LockActivity.this);
+                    return;
+                }
+
+                // Right password. Continue to the other activity.
+                // The lock screen stays below it: MainActivity finishes back to it when it locks.
+                Intent newIntent = new Intent(LockActivity.this, MainActivity.class);
+                startActivity(newIntent);
+            }
 
-        // Right password. Continue to the other activity.
-        Intent newIntent = new Intent(this, MainActivity.class);
-        startActivity(newIntent);
+            @Override
+            public void onError(Exception error) {
+                unlockButton.setEnabled(true);
+                // Any other errors.
+                Utilities.showErrorMessage(error.getMessage(), LockActivity.this);
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        unlockLane.cancel();
+        super.onDestroy();
     }
 }
@@ -16,6 +16,8 @@
  */
 package com.syndes.javacomponents;
 
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.UnsupportedEncodingException;
 import java.security.GeneralSecurityException;
 import java.util.Locale;
@@ -25,9 +27,14 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
 import android.text.ClipboardManager;
 import android.text.method.LinkMovementMethod;
 import android.text.util.Linkify;
@@ -38,6 +45,7 @@ import android.view.View;
 import android.view.WindowManager;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.ProgressBar;
 import android.widget.ScrollView;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -60,6 +68,46 @@ public class MainActivity extends AppCompatActivity {
     private boolean clipboardJobRunning = false;
     private int clipboardIndex = 1;
 
+    // --- File encryption through the Storage Access Framework ---
+    private static final int REQUEST_OPEN_FOR_ENCRYPT = 1;
+    private static final int REQUEST_OPEN_FOR_DECRYPT = 2;
+    private static final int REQUEST_CREATE_ENCRYPTED = 3;
+    private static final int REQUEST_CREATE_DECRYPTED = 4;
+    private static final String ENCRYPTED_FILE_SUFFIX = ".stc";
+    private Uri pendingSourceDocument;
+    // The document picker pauses this activity; it must not lock while the user picks a file.
+    private boolean awaitingDocument = false;
+
+    // --- Large texts ---
+    // Longer texts go to LargeTextView: an EditText lays out all of its text at once.
+    private static final int LARGE_TEXT_CHARS = 64 * 1024;
+
+    // Derived keys kept for repeated decrypts; cleared when the app locks or memory runs low.
+    private static final int KEY_CACHE_ENTRIES = 8;
+    // Recent decryption results, so decrypting the same text again is a lookup. Kept sealed under
+    // a session key and dropped together with the key cache.
+    private static final int RESULT_CACHE_ENTRIES = 8;
+    private static final int RESULT_CACHE_CHARS = 256 * 1024;
+    private final ResultCache resultCache = new ResultCache(RESULT_CACHE_ENTRIES, RESULT_CACHE_CHARS);
+
+    // --- Background encrypt/decrypt ---
+    // Progress bar is shown only for operations that take longer than this.
+    private static final long PROGRESS_DELAY_MS = 300;
+    private final CryptoExecutor cryptoLane = new CryptoExecutor();
+    // Large clipboard entries are written and read in the background, apart from encryption.
+    private final CryptoExecutor clipLane = new CryptoExecutor();
+    private final CryptoPipeline cryptoPipeline = new CryptoPipeline();
+    private final Handler progressHandler = new Handler(Looper.getMainLooper());
+    private final Runnable showProgressRunnable = new Runnable() {
+        @Override
+        public void run() {
+            ProgressBar progressBar = findViewById(R.id.cryptoProgressBar);
+            if (progressBar != null && cryptoLane.isBusy()) {
+                progressBar.setVisibility(View.VISIBLE);
+            }
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         // Apply saved locale
@@ -82,6 +130,7 @@ public class MainActivity extends AppCompatActivity {
                 WindowManager.LayoutParams.FLAG_SECURE);
         setContentView(R.layout.activity_main);
         this.lastActivity = System.currentTimeMillis() / 1000;
+        Crypter.setKeyCacheCapacity(KEY_CACHE_ENTRIES);
 
         // Подключение утилиты очистки буфера — предполагается кнопка с id clipboardWipeButton
         try {
@@ -123,6 +172,8 @@ public class MainActivity extends AppCompatActivity {
         if (clipboardJobRunning) return;
         clipboardJobRunning = true;
         clipboardIndex = 1;
+        // Large clips live in files behind content URIs; deleting them makes those URIs dead.
+        ClipStore.clear(this);
 
         clipboardRunnable = new Runnable() {
             @Override
@@ -198,66 +249,369 @@ public class MainActivity extends AppCompatActivity {
             showAbout();
         }
 
+        if (id == R.id.action_encrypt_file) {
+            pickDocument(REQUEST_OPEN_FOR_ENCRYPT);
+            return true;
+        }
+
+        if (id == R.id.action_decrypt_file) {
+            pickDocument(REQUEST_OPEN_FOR_DECRYPT);
+            return true;
+        }
+
+        if (id == R.id.action_lock) {
+            lockNow();
+            return true;
+        }
+
         return super.onOptionsItemSelected(item);
     }
 
     /**
      * Encrypt button handler — каскад: сначала Crypter, затем Crypter2.
-     * Crypter.encrypt(...) должен вернуть строку (обычно base64) — она подвергается обфускации Crypter2.
+     * Crypter шифрует текст в бинарный контейнер v2, Crypter2 кодирует его байты
+     * напрямую в иероглифы (плотный режим, без Base64). Оба этапа выполняет
+     * CryptoPipeline за один проход в общем буфере.
+     * Вся работа выполняется в CryptoExecutor, результат возвращается в editText.
      */
     public void onEncryptButtonClicked(View view) {
-        try {
-            // Первый этап: основное шифрование
-            String first = Crypter.encrypt(getEncryptionKey(), getText());
-            // Второй этап: обфускация/маппинг в кандзи
-            String second = Crypter2.encrypt(getEncryptionKey(), first);
-            setText(second);
-        } catch (Exception error) {
-            Utilities.showErrorMessage(error.getMessage(), this);
-        }
+        final String plaintext = getText();
+        runCrypto(new CryptoExecutor.Task<String>() {
+            @Override
+            public String run(CryptoExecutor.Progress progress) throws Exception {
+                String key = getEncryptionKey();
+                // The KDF is nearly all the work; it moves the progress bar and checks cancellation.
+                return cryptoPipeline.encrypt(key.toCharArray(), plaintext, progress);
+            }
+        });
     }
 
     /**
-     * Decrypt button handler — логика:
-     * - Если входная строка начинается с "v1" -> используем только Crypter (Crypter.decrypt).
-     * - Иначе -> сначала Crypter2.decrypt (деобфускация), затем Crypter.decrypt.
+     * Decrypt button handler — CryptoPipeline сам определяет формат:
+     * - плотная запись Crypter2 (маркер в начале) -> контейнер v2;
+     * - ASCII ("v1:..." или Base64 контейнера v2) -> только Crypter;
+     * - старые шифртексты из 95 кандзи -> сначала Crypter2.decrypt, затем Crypter.decrypt.
      */
     public void onDecryptButtonClicked(View view) {
-        try {
-            String input = getText();
-            if (input == null) input = "";
+        String text = getText();
+        final String input = text == null ? "" : text;
+        runCrypto(new CryptoExecutor.Task<String>() {
+            @Override
+            public String run(CryptoExecutor.Progress progress) throws Exception {
+                String key = getEncryptionKey();
+                char[] password = key.toCharArray();
+                try {
+                    String cached = resultCache.get(password, input);
+                    if (cached != null) {
+                        return cached;
+                    }
+                    // decrypt wipes the array it gets, so it gets its own copy; the cache
+                    // still needs the password for put.
+                    String plaintext = cryptoPipeline.decrypt(key.toCharArray(), input, progress);
+                    resultCache.put(password, input, plaintext);
+                    return plaintext;
+                } finally {
+                    java.util.Arrays.fill(password, '\0');
+                }
+            }
+        });
+    }
 
-            if (input.startsWith("v1")) {
-                // только Crypter
-                String stage = Crypter.decrypt(getEncryptionKey(), input);
-                setText(stage);
-            } else {
-                // оба: сначала Crypter2 (канзи -> base64), затем Crypter (расшифровка)
-                String stage1 = Crypter2.decrypt(getEncryptionKey(), input);
-                String stage2 = Crypter.decrypt(getEncryptionKey(), stage1);
-                setText(stage2);
+    /*
+     * Runs the given encrypt/decrypt task in the background and puts its result into the
+     * text box. A newer call supersedes a running one.
+     */
+    private void runCrypto(CryptoExecutor.Task<String> task) {
+        progressHandler.removeCallbacks(showProgressRunnable);
+        progressHandler.postDelayed(showProgressRunnable, PROGRESS_DELAY_MS);
+
+        cryptoLane.submit(task, new CryptoExecutor.Callback<String>() {
+            @Override
+            public void onProgress(int percent) {
+                ProgressBar progressBar = findViewById(R.id.cryptoProgressBar);
+                if (progressBar != null) {
+                    progressBar.setProgress(percent);
+                }
+            }
+
+            @Override
+            public void onResult(String result) {
+                hideProgress();
+                if (result != null) {
+                    setText(result);
+                }
+            }
+
+            @Override
+            public void onError(Exception error) {
+                hideProgress();
+                Utilities.showErrorMessage(error.getMessage(), MainActivity.this);
+            }
+        });
+    }
+
+    private void hideProgress() {
+        progressHandler.removeCallbacks(showProgressRunnable);
+        ProgressBar progressBar = findViewById(R.id.cryptoProgressBar);
+        if (progressBar != null) {
+            progressBar.setVisibility(View.GONE);
+            progressBar.setProgress(0);
+        }
+    }
+
+    /*
+     * Cancels the running encrypt/decrypt, if any. Its result is dropped.
+     */
+    private void cancelCrypto() {
+        cryptoLane.cancel();
+        hideProgress();
+    }
+
+    private void pickDocument(int requestCode) {
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("*/*");
+        awaitingDocument = true;
+        startActivityForResult(intent, requestCode);
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        awaitingDocument = false;
+        if (resultCode != RESULT_OK || data == null || data.getData() == null) {
+            pendingSourceDocument = null;
+            return;
+        }
+
+        Uri uri = data.getData();
+        if (requestCode == REQUEST_OPEN_FOR_ENCRYPT || requestCode == REQUEST_OPEN_FOR_DECRYPT) {
+            // Second step: asking where the result should go.
+            pendingSourceDocument = uri;
+            boolean encrypting = requestCode == REQUEST_OPEN_FOR_ENCRYPT;
+            String name = getDocumentName(uri);
+            if (encrypting) {
+                name = name + ENCRYPTED_FILE_SUFFIX;
+            } else if (name.endsWith(ENCRYPTED_FILE_SUFFIX)) {
+                name = name.substring(0, name.length() - ENCRYPTED_FILE_SUFFIX.length());
+            }
+
+            Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.setType(encrypting ? "application/octet-stream" : "*/*");
+            intent.putExtra(Intent.EXTRA_TITLE, name);
+            awaitingDocument = true;
+            startActivityForResult(intent,
+                    encrypting ? REQUEST_CREATE_ENCRYPTED : REQUEST_CREATE_DECRYPTED);
+        } else if (requestCode == REQUEST_CREATE_ENCRYPTED || requestCode == REQUEST_CREATE_DECRYPTED) {
+            Uri source = pendingSourceDocument;
+            pendingSourceDocument = null;
+            if (source != null) {
+                processDocument(source, uri, requestCode == REQUEST_CREATE_ENCRYPTED);
+            }
+        }
+    }
+
+    /*
+     * Encrypts or decrypts the source document into the target document, in the background.
+     * A failed decryption deletes the partially written target.
+     */
+    private void processDocument(final Uri source, final Uri target, final boolean encrypting) {
+        progressHandler.removeCallbacks(showProgressRunnable);
+        progressHandler.postDelayed(showProgressRunnable, PROGRESS_DELAY_MS);
+
+        cryptoLane.submit(new CryptoExecutor.Task<Void>() {
+            @Override
+            public Void run(CryptoExecutor.Progress progress) throws Exception {
+                char[] key = getEncryptionKey().toCharArray();
+                ParcelFileDescriptor in = getContentResolver().openFileDescriptor(source, "r");
+                ParcelFileDescriptor out = getContentResolver().openFileDescriptor(target, "w");
+                if (in == null || out == null) {
+                    throw new java.io.FileNotFoundException(in == null ? source.toString() : target.toString());
+                }
+                try {
+                    FileInputStream inStream = new FileInputStream(in.getFileDescriptor());
+                    FileOutputStream outStream = new FileOutputStream(out.getFileDescriptor());
+                    if (encrypting) {
+                        FileCrypter.encrypt(inStream.getChannel(), outStream.getChannel(), key);
+                    } else {
+                        FileCrypter.decrypt(inStream.getChannel(), outStream.getChannel(), key);
+                    }
+                } catch (Exception error) {
+                    out.close();
+                    try {
+                        DocumentsContract.deleteDocument(getContentResolver(), target);
+                    } catch (Exception ignored) {
+                        // Provider doesn't support deletion; nothing more we can do.
+                    }
+                    throw error;
+                } finally {
+                    in.close();
+                    out.close();
+                }
+                return null;
+            }
+        }, new CryptoExecutor.Callback<Void>() {
+            @Override
+            public void onProgress(int percent) {
+            }
+
+            @Override
+            public void onResult(Void result) {
+                hideProgress();
+                Toast.makeText(MainActivity.this,
+                        encrypting ? "File encrypted" : "File decrypted", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onError(Exception error) {
+                hideProgress();
+                Utilities.showErrorMessage(error.getMessage(), MainActivity.this);
+            }
+        });
+    }
+
+    /*
+     * Returns the display name of the document, or a generic name if the provider has none.
+     */
+    private String getDocumentName(Uri uri) {
+        Cursor cursor = getContentResolver().query(uri,
+                new String[]{OpenableColumns.DISPLAY_NAME}, null, null, null);
+        if (cursor != null) {
+            try {
+                if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                    return cursor.getString(0);
+                }
+            } finally {
+                cursor.close();
             }
-        } catch (Exception error) {
-            Utilities.showErrorMessage(error.getMessage(), this);
         }
+        return "document";
     }
 
     public void onCopyButtonClicked(View view) {
+        String text = getText();
+        if (text.length() > ClipStore.THRESHOLD_CHARS) {
+            // Too large for the clipboard as a string: goes as a content URI.
+            copyAsUri(text);
+            return;
+        }
+
         // Старый API (ради совместимости с текущим кодом) — android.text.ClipboardManager
         ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
         if (clipboard != null) {
-            clipboard.setText(getText());
+            clipboard.setText(text);
         }
     }
 
+    /*
+     * Deletes the plaintext clip files in the background when the app locks: like the result
+     * cache, they must not outlive the session. A clip being written is cancelled first.
+     * Not called when the app merely goes to the background, where the clip is pasted.
+     */
+    private void clearClips() {
+        clipLane.cancel();
+        final Context appContext = getApplicationContext();
+        CryptoExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ClipStore.clearPlaintext(appContext);
+            }
+        });
+    }
+
+    /*
+     * Writes the text to a ClipStore file in the background and puts its URI on the clipboard.
+     */
+    private void copyAsUri(final String text) {
+        final Context appContext = getApplicationContext();
+        clipLane.submit(new CryptoExecutor.Task<Uri>() {
+            @Override
+            public Uri run(CryptoExecutor.Progress progress) throws Exception {
+                return ClipStore.publish(appContext, text);
+            }
+        }, new CryptoExecutor.Callback<Uri>() {
+            @Override
+            public void onProgress(int percent) {
+            }
+
+            @Override
+            public void onResult(Uri uri) {
+                android.content.ClipboardManager cm =
+                        (android.content.ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
+                if (cm != null) {
+                    cm.setPrimaryClip(android.content.ClipData.newUri(getContentResolver(), "text", uri));
+                }
+            }
+
+            @Override
+            public void onError(Exception error) {
+                Utilities.showErrorMessage(error.getMessage(), MainActivity.this);
+            }
+        });
+    }
+
+    /*
+     * Reads a clip given as a content URI in the background and puts it into the text box.
+     */
+    private void pasteUri(final Uri uri) {
+        final Context appContext = getApplicationContext();
+        clipLane.submit(new CryptoExecutor.Task<String>() {
+            @Override
+            public String run(CryptoExecutor.Progress progress) throws Exception {
+                return ClipStore.read(appContext, uri);
+            }
+        }, new CryptoExecutor.Callback<String>() {
+            @Override
+            public void onProgress(int percent) {
+            }
+
+            @Override
+            public void onResult(String result) {
+                setText(result);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                Utilities.showErrorMessage(error.getMessage(), MainActivity.this);
+            }
+        });
+    }
+
     public void onPasteButtonClicked(View view) {
+        // Large clips come as content URIs. The old API would read them into a string on the
+        // main thread, so they are checked first and streamed in the background.
+        android.content.ClipboardManager cm =
+                (android.content.ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
+        android.content.ClipData clip = cm != null ? cm.getPrimaryClip() : null;
+        if (clip != null && clip.getItemCount() > 0 && clip.getItemAt(0).getText() == null
+                && clip.getItemAt(0).getUri() != null
+                && "content".equals(clip.getItemAt(0).getUri().getScheme())) {
+            final Uri uri = clip.getItemAt(0).getUri();
+            if (isTextEmpty()) {
+                pasteUri(uri);
+            } else {
+                AlertDialog.Builder builder = new AlertDialog.Builder(this);
+                builder.setMessage("Are you sure?");
+                builder.setCancelable(true);
+                builder.setPositiveButton("Yes", new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        pasteUri(uri);
+                    }
+                });
+                builder.setNegativeButton("No", null);
+                builder.show();
+            }
+            return;
+        }
+
         ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
         if (clipboard != null && clipboard.hasText()) {
             final String clipText = clipboard.getText().toString();
             EditText textBox = (EditText) findViewById(R.id.editText);
             if (textBox != null) {
-                String current = textBox.getText().toString();
-                if (current.isEmpty()) {
+                if (isTextEmpty()) {
                     // Поле пустое — вставляем сразу
                     setText(clipText);
                 } else {
@@ -284,8 +638,7 @@ public class MainActivity extends AppCompatActivity {
     public void onClearButtonClicked(View view) {
         EditText textBox = (EditText) findViewById(R.id.editText);
         if (textBox != null) {
-            String current = textBox.getText().toString();
-            if (current.isEmpty()) {
+            if (isTextEmpty()) {
                 // если уже пусто — ничего не делаем
                 setText("");
                 return;
@@ -314,6 +667,11 @@ public class MainActivity extends AppCompatActivity {
         if (timeout != 0 && currentTime - lastActivity >= timeout * 60) {
             // Empty the text box, to protect privacy.
             setText("");
+            // Lock timed out: forget the passcode and the decrypted settings.
+            cancelCrypto();
+            resultCache.clear();
+            clearClips();
+            SettingsManager.getInstance().lock();
             // Finishing this activity, to get back to the lock screen.
             finish();
         } else {
@@ -324,31 +682,92 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     protected void onPause() {
+        // The process may be killed in the background; a failed settings write gets another try.
+        SettingsManager.getInstance().retryPendingWrite(this);
         int timeout = SettingsManager.getInstance().getLockTimeout(this);
         long currentTime = System.currentTimeMillis() / 1000;
-        if (timeout == 0 || currentTime - lastActivity >= timeout * 60) {
+        if (!awaitingDocument && (timeout == 0 || currentTime - lastActivity >= timeout * 60)) {
             // Empty the text box, to protect privacy.
             setText("");
+            // Decrypted settings shouldn't outlive the activity.
+            cancelCrypto();
+            resultCache.clear();
+            SettingsManager.getInstance().clearSessionCache();
             // Finishing this activity, to get back to the lock screen.
             finish();
         }
         super.onPause();
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // Decrypted settings are only a cache; they can be derived again after unlock.
+        SettingsManager.getInstance().clearSessionCache();
+        resultCache.clear();
+        // UI_HIDDEN comes with every switch to another app, where a clip is pasted. From the
+        // background levels on, the process may be killed, ending the session with it.
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            clearClips();
+        }
+    }
+
+    /*
+     * Locks the app right away, regardless of the lock timeout.
+     */
+    private void lockNow() {
+        cancelCrypto();
+        resultCache.clear();
+        clearClips();
+        setText("");
+        SettingsManager.getInstance().lock();
+        Intent lockIntent = new Intent(this, LockActivity.class);
+        lockIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        startActivity(lockIntent);
+        finish();
+    }
+
     /*
      * Returns the text inside the Text Box.
      */
     private String getText() {
+        LargeTextView largeText = (LargeTextView) findViewById(R.id.largeTextView);
+        if (largeText.getVisibility() == View.VISIBLE) {
+            return largeText.getText();
+        }
         EditText textBox = (EditText) findViewById(R.id.editText);
         return textBox.getText().toString();
     }
 
+    private boolean isTextEmpty() {
+        LargeTextView largeText = (LargeTextView) findViewById(R.id.largeTextView);
+        if (largeText.getVisibility() == View.VISIBLE) {
+            return largeText.length() == 0;
+        }
+        EditText textBox = (EditText) findViewById(R.id.editText);
+        return textBox.length() == 0;
+    }
+
     /*
      * Sets the specified text in the Text Box.
+     * Large texts are shown read-only in LargeTextView instead; Clear brings the editor back.
      */
     private void setText(String input) {
         EditText textBox = (EditText) findViewById(R.id.editText);
-        textBox.setText(input);
+        LargeTextView largeText = (LargeTextView) findViewById(R.id.largeTextView);
+        View scrollView = findViewById(R.id.scrollView);
+
+        if (input != null && input.length() > LARGE_TEXT_CHARS) {
+            textBox.setText("");
+            scrollView.setVisibility(View.GONE);
+            largeText.setText(input);
+            largeText.setVisibility(View.VISIBLE);
+        } else {
+            largeText.clear();
+            largeText.setVisibility(View.GONE);
+            scrollView.setVisibility(View.VISIBLE);
+            textBox.setText(input);
+        }
     }
 
     /*
@@ -394,6 +813,9 @@ public class MainActivity extends AppCompatActivity {
     protected void onDestroy() {
         // Убедимся, что при уничтожении Activity процесс очистки буфера остановлен
         stopClipboardWipe();
+        cancelCrypto();
+        clipLane.cancel();
+        resultCache.clear();
         super.onDestroy();
     }
 }
@@ -17,6 +17,7 @@
  */
 package com.syndes.javacomponents;
 
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Bundle;
@@ -37,6 +38,8 @@ public class SettingsActivity extends AppCompatActivity {
     private static final String PREF_LANGUAGE = "language";
     private String selectedTheme;
     private String selectedLanguage;
+    // Reading the settings and writing them both run the KDF, so they are done in the background.
+    private final CryptoExecutor settingsLane = new CryptoExecutor();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -155,27 +158,48 @@ public class SettingsActivity extends AppCompatActivity {
 
         // Saving settings
         try {
-            SettingsManager.getInstance().setPasscode(passcodeTextBox.getText().toString(), this);
-            SettingsManager.getInstance().setEncryptionKey(encryptionKeyTextBox.getText().toString(), this);
-            SettingsManager.getInstance().setLockTimeout(lockTimeoutTextBox.getText().toString(), this);
-            
-            // Save theme and language
-            SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-            prefs.edit().putString(PREF_THEME, selectedTheme).apply();
-            prefs.edit().putString(PREF_LANGUAGE, selectedLanguage).apply();
-            
-            // Apply new locale
-            setLocale(selectedLanguage);
-            
-            // Restart the app
-            Intent intent = new Intent(this, MainActivity.class);
-            intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-            finishAffinity();
-            startActivity(intent);
+            SettingsManager.getInstance().saveSettings(passcodeTextBox.getText().toString(),
+                    encryptionKeyTextBox.getText().toString(),
+                    lockTimeoutTextBox.getText().toString(), this);
         } catch (Exception error) {
             Utilities.showErrorMessage(error.getMessage(), this);
             return;
         }
+
+        // The app is restarted only once the settings are on disk.
+        settingsLane.submit(new CryptoExecutor.Task<Void>() {
+            @Override
+            public Void run(CryptoExecutor.Progress progress) throws Exception {
+                SettingsManager.getInstance().flush(SettingsActivity.this);
+                return null;
+            }
+        }, new CryptoExecutor.Callback<Void>() {
+            @Override
+            public void onProgress(int percent) {
+            }
+
+            @Override
+            public void onResult(Void result) {
+                // Save theme and language
+                SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+                prefs.edit().putString(PREF_THEME, selectedTheme).apply();
+                prefs.edit().putString(PREF_LANGUAGE, selectedLanguage).apply();
+
+                // Apply new locale
+                setLocale(selectedLanguage);
+
+                // Restart the app
+                Intent intent = new Intent(SettingsActivity.this, MainActivity.class);
+                intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+                finishAffinity();
+                startActivity(intent);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                Utilities.showErrorMessage(error.getMessage(), SettingsActivity.this);
+            }
+        });
     }
 
     public void onKeyCleanClicked(View view) {
@@ -189,19 +213,47 @@ public class SettingsActivity extends AppCompatActivity {
         super.onPause();
     }
 
+    @Override
+    protected void onDestroy() {
+        // A save still in progress finishes in SettingsManager; only its callback is dropped.
+        settingsLane.cancel();
+        super.onDestroy();
+    }
+
     private void loadPreviousSettings() {
-        EditText encryptionKeyTextBox = findViewById(R.id.encryptionKeyEditText);
-        EditText passcodeTextBox = findViewById(R.id.passcodeEditText);
-        EditText lockTimeoutTextBox = findViewById(R.id.lockTimeoutEditText);
+        final EditText encryptionKeyTextBox = findViewById(R.id.encryptionKeyEditText);
+        final EditText passcodeTextBox = findViewById(R.id.passcodeEditText);
+        final EditText lockTimeoutTextBox = findViewById(R.id.lockTimeoutEditText);
 
-        try {
-            encryptionKeyTextBox.setText(SettingsManager.getInstance().getEncryptionKey(this));
-            passcodeTextBox.setText(SettingsManager.getInstance().getPasscode(this));
-            lockTimeoutTextBox.setText(Integer.toString(SettingsManager.getInstance().getLockTimeout(this)));
-            selectedTheme = getSharedPreferences(PREFS_NAME, MODE_PRIVATE).getString(PREF_THEME, "light");
-            selectedLanguage = getSharedPreferences(PREFS_NAME, MODE_PRIVATE).getString(PREF_LANGUAGE, "ru");
-        } catch (Exception error) {
-            Utilities.showErrorMessage(error.getMessage(), this);
-        }
+        selectedTheme = getSharedPreferences(PREFS_NAME, MODE_PRIVATE).getString(PREF_THEME, "light");
+        selectedLanguage = getSharedPreferences(PREFS_NAME, MODE_PRIVATE).getString(PREF_LANGUAGE, "ru");
+
+        final Context appContext = getApplicationContext();
+        settingsLane.submit(new CryptoExecutor.Task<String[]>() {
+            @Override
+            public String[] run(CryptoExecutor.Progress progress) throws Exception {
+                SettingsManager settings = SettingsManager.getInstance();
+                return new String[]{
+                        settings.getEncryptionKey(appContext),
+                        settings.getPasscode(appContext),
+                        Integer.toString(settings.getLockTimeout(appContext))};
+            }
+        }, new CryptoExecutor.Callback<String[]>() {
+            @Override
+            public void onProgress(int percent) {
+            }
+
+            @Override
+            public void onResult(String[] values) {
+                encryptionKeyTextBox.setText(values[0]);
+                passcodeTextBox.setText(values[1]);
+                lockTimeoutTextBox.setText(values[2]);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                Utilities.showErrorMessage(error.getMessage(), SettingsActivity.this);
+            }
+        });
     }
 }
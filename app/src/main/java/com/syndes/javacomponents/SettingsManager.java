@@ -17,38 +17,127 @@
  */
 package com.syndes.javacomponents;
 
+import android.app.ActivityManager;
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.util.Log;
 
 import com.syndes.javacomponents.exceptions.EncryptionKeyNotSet;
 import com.syndes.javacomponents.exceptions.SettingsNotSavedException;
 import com.syndes.javacomponents.exceptions.WrongPasscodeException;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
 
 /*
  * Manages settings of the app.
- * It store settings encrypted.
+ * The secret settings are stored as one encrypted record, decrypted once per session into
+ * an immutable Snapshot. Saving swaps the snapshot in memory right away and writes it
+ * behind, on a background thread. A failed write is kept and retried; flush reports it.
+ * Everything is kept in a SettingsStore file, read once when the process starts. Settings
+ * kept in SharedPreferences by older versions are moved there on first start.
+ *
+ * Thread-safe: the session state is a SettingsSession, swapped with compare-and-set.
  */
 public class SettingsManager {
 
-    private static SettingsManager instance;
+    private static final String TAG = "SettingsManager";
+
+    private final SettingsSession<Snapshot> session =
+            new SettingsSession<>(Constants.DEFAULT_PASSCODE);
+
+    private final AtomicBoolean kdfCalibrationStarted = new AtomicBoolean();
+
+    // Opened on first use. Never changes after that.
+    private volatile SettingsStore store;
+
+    // A string resource telling the user the settings file was damaged when opened, or 0.
+    private final AtomicInteger storeWarning = new AtomicInteger();
+
+    /*
+     * The latest snapshot not written yet. Several saves in a row collapse into one write.
+     */
+    private final AtomicReference<Snapshot> pendingWrite = new AtomicReference<>();
+
+    // Why the last write failed, or null if it succeeded. The failed snapshot stays in pendingWrite.
+    private volatile Exception writeError;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "settings-writer");
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    });
+
+    /*
+     * Decrypted settings. Never modified: saving creates a new snapshot.
+     */
+    private static final class Snapshot {
+        private static final String PASSCODE = "passcode";
+        private static final String ENCRYPTION_KEY = "encryptionKey";
+
+        final String passcode;
+        final String encryptionKey;
+        final int lockTimeout;
+
+        Snapshot(String passcode, String encryptionKey, int lockTimeout) {
+            this.passcode = passcode;
+            this.encryptionKey = encryptionKey;
+            this.lockTimeout = lockTimeout;
+        }
+
+        String toRecord() {
+            try {
+                return new JSONObject()
+                        .put(PASSCODE, passcode)
+                        .put(ENCRYPTION_KEY, encryptionKey)
+                        .toString();
+            } catch (JSONException error) {
+                throw new IllegalStateException(error);
+            }
+        }
 
-    private String passcode = "1111";
+        static Snapshot fromRecord(String record, int lockTimeout) throws GeneralSecurityException {
+            try {
+                JSONObject json = new JSONObject(record);
+                return new Snapshot(json.getString(PASSCODE), json.optString(ENCRYPTION_KEY, ""),
+                        lockTimeout);
+            } catch (JSONException error) {
+                throw new GeneralSecurityException("Corrupted settings record", error);
+            }
+        }
+    }
 
     private SettingsManager() {
     }
 
-    public static SettingsManager getInstance() {
-        if (instance == null) {
-            instance = new SettingsManager();
-        }
+    // Initialized on first use; class initialization makes it safe across threads.
+    private static final class Holder {
+        static final SettingsManager INSTANCE = new SettingsManager();
+    }
 
-        return instance;
+    public static SettingsManager getInstance() {
+        return Holder.INSTANCE;
     }
 
     /*
@@ -60,20 +149,15 @@ public class SettingsManager {
             throws UnsupportedEncodingException,
             GeneralSecurityException,
             WrongPasscodeException {
-        SharedPreferences sharedPref = context.getSharedPreferences(Constants.PREFERENCES_KEY,
-                Context.MODE_PRIVATE);
-
-        if (!sharedPref.contains(Constants.PASSCODE_SETTINGS_KEY)) {
+        if (!hasSettings(context)) {
             return Constants.DEFAULT_PASSCODE;
         }
 
         // Keeping passcode for later use.
-        this.passcode = passcode;
+        session.unlock(passcode);
 
         try {
-            return Crypter.decrypt(
-                    this.passcode,
-                    sharedPref.getString(Constants.PASSCODE_SETTINGS_KEY, Constants.DEFAULT_PASSCODE));
+            return loadSnapshot(context).passcode;
         } catch (IllegalBlockSizeException | BadPaddingException error) {
             // The settings couldn't be decrypted using this passcode. It probably wrong.
             throw new WrongPasscodeException(context);
@@ -86,110 +170,369 @@ public class SettingsManager {
     public String getPasscode(Context context)
             throws UnsupportedEncodingException,
             GeneralSecurityException {
-        SharedPreferences sharedPref = context.getSharedPreferences(Constants.PREFERENCES_KEY,
-                Context.MODE_PRIVATE);
-
-        if (!sharedPref.contains(Constants.PASSCODE_SETTINGS_KEY)) {
+        if (!hasSettings(context)) {
             return Constants.DEFAULT_PASSCODE;
         }
-
-        return Crypter.decrypt(
-                this.passcode,
-                sharedPref.getString(Constants.PASSCODE_SETTINGS_KEY, Constants.DEFAULT_PASSCODE));
+        return loadSnapshot(context).passcode;
     }
 
     /*
-     * This is the passcode user typed on LockActivity.
-     * It will be used to encrypt/decrypt settings.
+     * Gets the key that the text on the textbox should be encrypted with.
      *
-     * @throw SettingsNotSavedException: If settings could not be saved.
+     * @throw EncryptionKeyNotSet: If the encryption key doesn't set in the settings.
      */
-    public void setPasscode(String passcode, Context context)
+    public String getEncryptionKey(Context context)
             throws UnsupportedEncodingException,
             GeneralSecurityException,
-            SettingsNotSavedException {
+            EncryptionKeyNotSet {
+        if (!hasSettings(context)) {
+            return "";
+        }
+        return loadSnapshot(context).encryptionKey;
+    }
 
-        this.passcode = passcode;
+    /*
+     * Saves all settings at once. The new values are used right away; the encrypted record
+     * is written in the background (one KDF run and one write for all the settings).
+     * Call flush to learn whether it reached the disk.
+     * The passcode becomes the key of the settings record.
+     */
+    public void saveSettings(String passcode, String encryptionKey, String timeout,
+                             Context context) {
+        int intTimeout = 0;
+        if (timeout != null && !timeout.isEmpty()) {
+            intTimeout = Integer.parseInt(timeout);
+        }
 
-        SharedPreferences sharedPref = context.getSharedPreferences(Constants.PREFERENCES_KEY,
-                Context.MODE_PRIVATE);
-        SharedPreferences.Editor prefEditor = sharedPref.edit();
+        Snapshot saved = new Snapshot(passcode, encryptionKey, intTimeout);
+        session.save(saved.passcode, saved, saved.lockTimeout);
+        writeBehind(saved, context);
+    }
 
-        prefEditor.putString(Constants.PASSCODE_SETTINGS_KEY,
-                Crypter.encrypt(passcode, passcode));
+    public int getLockTimeout(Context context) {
+        int timeout = session.get().lockTimeout;
+        if (timeout >= 0) {
+            return timeout;
+        }
+        return session.loadLockTimeout(store(context).getInt(Constants.LOCK_TIMEOUT_SETTINGS_KEY, 0));
+    }
 
-        if (!prefEditor.commit()) {
-            throw new SettingsNotSavedException(context);
+    /*
+     * Makes Crypter use the KDF parameters calibrated for this device: the PBKDF2 iteration count
+     * and, on multi-core devices, scrypt parameters sized to the app's heap class.
+     * They are measured once, in the background, and stored unencrypted: they are not a secret,
+     * every ciphertext carries them in its header anyway. Until the first calibration finishes,
+     * the defaults are used.
+     */
+    public void applyKdfCalibration(Context context) {
+        final SettingsStore settings = store(context);
+
+        int stored = settings.getInt(Constants.KDF_ITERATIONS_SETTINGS_KEY, 0);
+        if (stored > 0 && settings.contains(Constants.KDF_SCRYPT_COST_SETTINGS_KEY)) {
+            try {
+                Crypter.setIterations(stored);
+                Crypter.setScryptCost(settings.getInt(Constants.KDF_SCRYPT_COST_SETTINGS_KEY, 0));
+                return;
+            } catch (IllegalArgumentException error) {
+                // Out of range, probably written by another version. Calibrating again.
+            }
+        }
+
+        if (!kdfCalibrationStarted.compareAndSet(false, true)) {
+            return;
         }
+
+        final long scryptMemory = scryptMemoryBudget(context);
+        CryptoExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int iterations = KdfCalibrator.calibrate(KdfCalibrator.DEFAULT_TARGET_MILLIS);
+                Crypter.setIterations(iterations);
+
+                int scryptCost = 0;
+                if (scryptMemory > 0) {
+                    scryptCost = KdfCalibrator.calibrateScrypt(
+                            KdfCalibrator.DEFAULT_TARGET_MILLIS, scryptMemory);
+                }
+                Crypter.setScryptCost(scryptCost);
+
+                try {
+                    settings.edit()
+                            .putInt(Constants.KDF_ITERATIONS_SETTINGS_KEY, iterations)
+                            .putInt(Constants.KDF_SCRYPT_COST_SETTINGS_KEY, scryptCost)
+                            .commit();
+                } catch (IOException error) {
+                    Log.e(TAG, "KDF calibration could not be saved", error);
+                }
+            }
+        });
     }
 
     /*
-     * Gets the key that the text on the textbox should be encrypted with.
-     *
-     * @throw EncryptionKeyNotSet: If the encryption key doesn't set in the settings.
+     * Memory scrypt may take: a quarter of the heap the system gives this app.
+     * Zero on single-core and low-RAM devices, where PBKDF2 is the better choice.
      */
-    public String getEncryptionKey(Context context)
-            throws UnsupportedEncodingException,
-            GeneralSecurityException,
-            EncryptionKeyNotSet {
-        SharedPreferences sharedPref = context.getSharedPreferences(Constants.PREFERENCES_KEY,
-                Context.MODE_PRIVATE);
+    private static long scryptMemoryBudget(Context context) {
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager == null || activityManager.isLowRamDevice()
+                || Runtime.getRuntime().availableProcessors() < 2) {
+            return 0;
+        }
+        return activityManager.getMemoryClass() * 1024L * 1024L / 4;
+    }
 
-        if (!sharedPref.contains(Constants.ENCRYPTION_KEY_SETTINGS_KEY)) {
-            return "";
+    /*
+     * Reads the settings file, so the first real access doesn't have to. Call off the main thread.
+     */
+    public void preload(Context context) {
+        store(context);
+    }
+
+    /*
+     * Returns the message to show if the settings file was damaged and its backup or the defaults
+     * are in use, or null. Each message is returned only once.
+     */
+    public String takeStoreWarning(Context context) {
+        store(context);
+        int warning = storeWarning.getAndSet(0);
+        return warning != 0 ? context.getString(warning) : null;
+    }
+
+    /*
+     * Drops the decrypted settings kept for the current session.
+     * The passcode is kept, so the next access decrypts the settings again.
+     * Called when the system is low on memory. Keys cached by Crypter go too.
+     */
+    public void clearSessionCache() {
+        Crypter.clearKeyCache();
+        session.clearSnapshot();
+    }
+
+    /*
+     * Locks the settings: forgets the passcode along with everything decrypted with it.
+     * The user has to go through LockActivity again before the settings can be read.
+     */
+    public void lock() {
+        Crypter.clearKeyCache();
+        session.lock();
+    }
+
+    private SettingsStore store(Context context) {
+        SettingsStore current = store;
+        if (current == null) {
+            // Only the first access opens the file; it must not happen twice.
+            synchronized (this) {
+                current = store;
+                if (current == null) {
+                    current = openStore(context.getApplicationContext());
+                    store = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private SettingsStore openStore(Context context) {
+        File file = new File(context.getFilesDir(), Constants.SETTINGS_FILE_NAME);
+        SettingsStore opened;
+        try {
+            opened = SettingsStore.open(file);
+        } catch (IOException error) {
+            // Neither the file nor its backup can be read. The settings left in SharedPreferences
+            // by older versions are all there is; without them, the defaults are used.
+            Log.e(TAG, "Settings file and its backup are unreadable", error);
+            storeWarning.set(R.string.settings_lost_error);
+            opened = SettingsStore.empty(file);
+            migratePreferences(opened, context);
+            return opened;
         }
 
-        return Crypter.decrypt(
-                this.passcode,
-                sharedPref.getString(Constants.ENCRYPTION_KEY_SETTINGS_KEY, ""));
+        if (opened.isRestored()) {
+            Log.e(TAG, "Settings file is corrupted, restored its backup");
+            storeWarning.set(R.string.settings_restored_warning);
+        }
+        if (!opened.exists()) {
+            migratePreferences(opened, context);
+        }
+        return opened;
     }
 
     /*
-     * Sets the key that the text on the textbox should be encrypted with.
-     *
-     * @throw SettingsNotSavedException: If settings could not be saved.
+     * Moves the settings stored in SharedPreferences by older versions into the store.
+     * Values are copied as they are: still encrypted, with the same keys.
      */
-    public void setEncryptionKey(String key, Context context)
-            throws UnsupportedEncodingException,
-            GeneralSecurityException,
-            SettingsNotSavedException {
+    private static void migratePreferences(SettingsStore target, Context context) {
         SharedPreferences sharedPref = context.getSharedPreferences(Constants.PREFERENCES_KEY,
                 Context.MODE_PRIVATE);
-        SharedPreferences.Editor prefEditor = sharedPref.edit();
+        Map<String, ?> values = sharedPref.getAll();
+        if (values.isEmpty()) {
+            return;
+        }
 
-        prefEditor.putString(Constants.ENCRYPTION_KEY_SETTINGS_KEY,
-                Crypter.encrypt(this.passcode, key));
+        SettingsStore.Editor editor = target.edit();
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            Object value = entry.getValue();
+            if (Constants.SETTINGS_RECORD_KEY.equals(entry.getKey()) && value instanceof String) {
+                try {
+                    editor.putBytes(entry.getKey(), Armor.decode((String) value));
+                } catch (IllegalArgumentException error) {
+                    Log.e(TAG, "Settings record is corrupted, dropping it", error);
+                }
+            } else if (value instanceof Integer) {
+                editor.putInt(entry.getKey(), (Integer) value);
+            } else if (value instanceof String) {
+                editor.putString(entry.getKey(), (String) value);
+            }
+        }
 
-        if (!prefEditor.commit()) {
-            throw new SettingsNotSavedException(context);
+        try {
+            editor.commit();
+            sharedPref.edit().clear().commit();
+        } catch (IOException error) {
+            // The values are in memory anyway; the migration is retried on the next start.
+            Log.e(TAG, "Settings could not be migrated", error);
         }
     }
 
-    public void setLockTimeout(String timeout, Context context) throws SettingsNotSavedException {
-        SharedPreferences sharedPref = context.getSharedPreferences(Constants.PREFERENCES_KEY,
-                Context.MODE_PRIVATE);
-        SharedPreferences.Editor prefEditor = sharedPref.edit();
+    private boolean hasSettings(Context context) {
+        SettingsStore settings = store(context);
+        return pendingWrite.get() != null
+                || settings.contains(Constants.SETTINGS_RECORD_KEY)
+                || settings.contains(Constants.PASSCODE_SETTINGS_KEY);
+    }
 
-        int intTimeout = 0;
-        if (timeout != null && !timeout.isEmpty()) {
-            intTimeout = Integer.parseInt(timeout);
+    /*
+     * Returns the session snapshot, decrypting the stored record with the current passcode
+     * if needed. Settings stored by older versions as separate values are migrated into
+     * the record on first load.
+     */
+    private Snapshot loadSnapshot(Context context)
+            throws UnsupportedEncodingException,
+            GeneralSecurityException {
+        SettingsSession.State<Snapshot> current = session.get();
+        if (current.snapshot != null) {
+            return current.snapshot;
+        }
+        String passcode = current.passcode;
+
+        final Snapshot loaded;
+        Snapshot pending = pendingWrite.get();
+        if (pending != null) {
+            // A save that hasn't reached the disk yet is newer than what is stored.
+            if (!pending.passcode.equals(passcode)) {
+                throw new BadPaddingException("Wrong passcode");
+            }
+            loaded = pending;
+        } else {
+            SettingsStore settings = store(context);
+            int timeout = getLockTimeout(context);
+            byte[] record = settings.getBytes(Constants.SETTINGS_RECORD_KEY);
+            if (record != null) {
+                byte[] plain = Crypter.decryptEnvelope(passcode.toCharArray(), record);
+                try {
+                    loaded = Snapshot.fromRecord(new String(plain, StandardCharsets.UTF_8), timeout);
+                } finally {
+                    java.util.Arrays.fill(plain, (byte) 0);
+                }
+            } else {
+                String legacyPasscode = Crypter.decrypt(passcode,
+                        settings.getString(Constants.PASSCODE_SETTINGS_KEY, Constants.DEFAULT_PASSCODE));
+                String legacyKey = "";
+                if (settings.contains(Constants.ENCRYPTION_KEY_SETTINGS_KEY)) {
+                    legacyKey = Crypter.decrypt(passcode,
+                            settings.getString(Constants.ENCRYPTION_KEY_SETTINGS_KEY, ""));
+                }
+                loaded = new Snapshot(legacyPasscode, legacyKey, timeout);
+                writeBehind(loaded, context);
+            }
         }
 
-        prefEditor.putInt(Constants.LOCK_TIMEOUT_SETTINGS_KEY, intTimeout);
+        return session.cache(passcode, loaded);
+    }
 
-        if (!prefEditor.commit()) {
-            throw new SettingsNotSavedException(context);
+    /*
+     * Queues the snapshot for writing. Only the latest queued snapshot is written.
+     */
+    private void writeBehind(Snapshot saved, Context context) {
+        pendingWrite.set(saved);
+        queueWrite(store(context));
+    }
+
+    private Future<?> queueWrite(final SettingsStore settings) {
+        return writer.submit(new Runnable() {
+            @Override
+            public void run() {
+                writePending(settings);
+            }
+        });
+    }
+
+    /*
+     * Writes the latest pending snapshot. If that fails, the snapshot stays pending: it is still
+     * used for this session and written by the next retryPendingWrite, flush or save.
+     */
+    private void writePending(SettingsStore settings) {
+        Snapshot latest = pendingWrite.get();
+        if (latest == null) {
+            return;
         }
+
+        byte[] plain = latest.toRecord().getBytes(StandardCharsets.UTF_8);
+        try {
+            byte[] record = Crypter.encryptToEnvelope(latest.passcode.toCharArray(), plain);
+            settings.edit()
+                    .putBytes(Constants.SETTINGS_RECORD_KEY, record)
+                    .putInt(Constants.LOCK_TIMEOUT_SETTINGS_KEY, latest.lockTimeout)
+                    .remove(Constants.PASSCODE_SETTINGS_KEY)
+                    .remove(Constants.ENCRYPTION_KEY_SETTINGS_KEY)
+                    .commit();
+        } catch (GeneralSecurityException error) {
+            Log.e(TAG, "Settings could not be encrypted", error);
+            writeError = error;
+            return;
+        } catch (IOException error) {
+            Log.e(TAG, "Settings could not be saved", error);
+            writeError = error;
+            return;
+        } finally {
+            java.util.Arrays.fill(plain, (byte) 0);
+        }
+
+        writeError = null;
+        // A newer save may have been queued meanwhile; it has its own task.
+        pendingWrite.compareAndSet(latest, null);
     }
 
-    public int getLockTimeout(Context context) {
-        SharedPreferences sharedPref = context.getSharedPreferences(Constants.PREFERENCES_KEY,
-                Context.MODE_PRIVATE);
+    /*
+     * Writes the settings again if an earlier write failed. Called when the app goes
+     * to the background, where the process may be killed.
+     */
+    public void retryPendingWrite(Context context) {
+        if (pendingWrite.get() != null && writeError != null) {
+            queueWrite(store(context));
+        }
+    }
 
-        if (!sharedPref.contains(Constants.LOCK_TIMEOUT_SETTINGS_KEY)) {
-            return 0;
+    /*
+     * Waits until the saved settings are on disk. It runs the KDF, so call it off the main thread.
+     *
+     * @throw SettingsNotSavedException: If the settings couldn't be written. They are still
+     * used for this session and will be written again on the next retryPendingWrite.
+     */
+    public void flush(Context context) throws SettingsNotSavedException {
+        try {
+            queueWrite(store(context)).get();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new SettingsNotSavedException(context, error);
+        } catch (ExecutionException error) {
+            throw new SettingsNotSavedException(context, error.getCause());
         }
 
-        return sharedPref.getInt(Constants.LOCK_TIMEOUT_SETTINGS_KEY, 0);
+        Exception failure = writeError;
+        if (failure != null) {
+            throw new SettingsNotSavedException(context, failure);
+        }
     }
 }
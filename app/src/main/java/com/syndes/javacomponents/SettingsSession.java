@@ -0,0 +1,167 @@
+/*
+ * This file is part of SimpleTextCrypt.
+ * Copyright (c) 2015-2020, Aidin Gharibnavaz <aidin@syndes.com>
+ *
+ * SimpleTextCrypt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SimpleTextCrypt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SimpleTextCrypt.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.syndes.javacomponents;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Session state of SettingsManager: the passcode, the decrypted settings and the lock timeout.
+ * S is the type of the decrypted settings.
+ *
+ * Thread-safe: settings are read from crypto worker threads while the UI thread saves or locks.
+ * All of it is one immutable State behind an AtomicReference. Readers just read it;
+ * writers build a new State and swap it in with compare-and-set, so nobody takes a lock.
+ */
+final class SettingsSession<S> {
+
+    /*
+     * Session state. Never modified: every change creates a new State.
+     */
+    static final class State<S> {
+        // The key of the settings record, as typed on the lock screen.
+        final String passcode;
+        // Session cache of the decrypted settings record. Decrypting it costs one full KDF run,
+        // so it is done once after unlock and kept until the app locks or the system asks us
+        // to release memory. Null when not decrypted yet.
+        final S snapshot;
+        // The lock timeout isn't secret, so it lives outside the encrypted record. -1: not read yet.
+        final int lockTimeout;
+
+        State(String passcode, S snapshot, int lockTimeout) {
+            this.passcode = passcode;
+            this.snapshot = snapshot;
+            this.lockTimeout = lockTimeout;
+        }
+    }
+
+    /*
+     * A copy-on-write change of the state. May be applied more than once if another thread
+     * changes the state concurrently, so it must not have side effects.
+     */
+    interface Update<S> {
+        State<S> apply(State<S> current);
+    }
+
+    // The passcode of a locked session.
+    private final String lockedPasscode;
+
+    private final AtomicReference<State<S>> state;
+
+    SettingsSession(String lockedPasscode) {
+        this.lockedPasscode = lockedPasscode;
+        this.state = new AtomicReference<>(new State<S>(lockedPasscode, null, -1));
+    }
+
+    State<S> get() {
+        return state.get();
+    }
+
+    /*
+     * Keeps the passcode typed on the lock screen. The settings must be decrypted with it again.
+     */
+    void unlock(final String passcode) {
+        update(new Update<S>() {
+            @Override
+            public State<S> apply(State<S> current) {
+                return new State<>(passcode, null, current.lockTimeout);
+            }
+        });
+    }
+
+    /*
+     * Replaces everything with newly saved settings.
+     */
+    void save(String passcode, S snapshot, int lockTimeout) {
+        final State<S> saved = new State<>(passcode, snapshot, lockTimeout);
+        update(new Update<S>() {
+            @Override
+            public State<S> apply(State<S> current) {
+                return saved;
+            }
+        });
+    }
+
+    /*
+     * Sets the lock timeout read from the disk and returns the one in use.
+     * A save may have set it meanwhile; that value wins.
+     */
+    int loadLockTimeout(final int stored) {
+        return update(new Update<S>() {
+            @Override
+            public State<S> apply(State<S> current) {
+                return current.lockTimeout >= 0
+                        ? current : new State<>(current.passcode, current.snapshot, stored);
+            }
+        }).lockTimeout;
+    }
+
+    /*
+     * Caches settings decrypted with the given passcode and returns the ones to use.
+     * Cached only if the session is still the one they were decrypted for: the app may have
+     * been locked, or the settings saved, while the KDF was running.
+     */
+    S cache(final String passcode, final S loaded) {
+        State<S> next = update(new Update<S>() {
+            @Override
+            public State<S> apply(State<S> current) {
+                if (current.snapshot != null || !current.passcode.equals(passcode)) {
+                    return current;
+                }
+                return new State<>(current.passcode, loaded, current.lockTimeout);
+            }
+        });
+        return next.snapshot != null ? next.snapshot : loaded;
+    }
+
+    /*
+     * Drops the decrypted settings, keeping the passcode.
+     */
+    void clearSnapshot() {
+        update(new Update<S>() {
+            @Override
+            public State<S> apply(State<S> current) {
+                return new State<>(current.passcode, null, current.lockTimeout);
+            }
+        });
+    }
+
+    /*
+     * Forgets the passcode along with everything decrypted with it.
+     */
+    void lock() {
+        update(new Update<S>() {
+            @Override
+            public State<S> apply(State<S> current) {
+                return new State<>(lockedPasscode, null, current.lockTimeout);
+            }
+        });
+    }
+
+    /*
+     * Applies the change with a compare-and-set loop and returns the new state.
+     */
+    State<S> update(Update<S> change) {
+        while (true) {
+            State<S> current = state.get();
+            State<S> next = change.apply(current);
+            if (next == current || state.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * This file is part of SimpleTextCrypt.
+ * Copyright (c) 2015-2020, Aidin Gharibnavaz <aidin@syndes.com>
+ *
+ * SimpleTextCrypt is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * SimpleTextCrypt is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with SimpleTextCrypt.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.syndes.javacomponents;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Warms the app up in the background while the splash and lock screens are shown:
+ * reads the settings file and runs CryptoWarmup, so the first encryption the user asks for
+ * doesn't pay for provider lookup, class loading and the interpreter.
+ * Runs once per process; the timings go to the log.
+ */
+public final class Warmup {
+
+    private static final String TAG = "Warmup";
+
+    private static final AtomicBoolean started = new AtomicBoolean();
+
+    private Warmup() {
+    }
+
+    public static void start(Context context) {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+
+        final Context appContext = context.getApplicationContext();
+        CryptoExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = SystemClock.elapsedRealtime();
+                SettingsManager.getInstance().preload(appContext);
+                long settings = SystemClock.elapsedRealtime() - start;
+
+                try {
+                    CryptoWarmup.Report report = CryptoWarmup.run();
+                    Log.i(TAG, "Warm-up done: settings=" + settings + "ms " + report);
+                } catch (Exception error) {
+                    // Nothing is lost: the first operation just warms up by itself.
+                    Log.w(TAG, "Warm-up failed", error);
+                }
+            }
+        });
+    }
+}
@@ -79,6 +79,9 @@ public class ZLSActivity extends AppCompatActivity {
 
         handler = new Handler(Looper.getMainLooper());
 
+        // Пока идёт заставка, прогреваем криптографию и читаем настройки в фоне
+        Warmup.start(this);
+
         // Запускаем точечную анимацию сразу
         handler.post(dotRunnable);
 
@@ -29,4 +29,8 @@ public class SettingsNotSavedException extends Exception {
     public SettingsNotSavedException(Context context) {
         super(context.getString(R.string.settings_save_error));
     }
+
+    public SettingsNotSavedException(Context context, Throwable cause) {
+        super(context.getString(R.string.settings_save_error), cause);
+    }
 }
@@ -0,0 +1,178 @@
+package com.syndes.javacomponents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * SettingsSession under concurrent saves, unlocks, locks and reads.
+ */
+public class SettingsSessionTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 20000;
+
+    /*
+     * Stands in for the decrypted settings.
+     */
+    private static final class Settings {
+        final String passcode;
+        final int lockTimeout;
+
+        Settings(String passcode, int lockTimeout) {
+            this.passcode = passcode;
+            this.lockTimeout = lockTimeout;
+        }
+    }
+
+    private final SettingsSession<Settings> session = new SettingsSession<>("locked");
+
+    /*
+     * Runs the task on THREADS threads started at once and returns their results.
+     */
+    private static <T> List<T> hammer(final Callable<T> task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(pool.submit(new Callable<T>() {
+                    @Override
+                    public T call() throws Exception {
+                        start.await();
+                        return task.call();
+                    }
+                }));
+            }
+            start.countDown();
+
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void losesNoUpdates() throws Exception {
+        session.loadLockTimeout(0);
+        hammer(new Callable<Void>() {
+            @Override
+            public Void call() {
+                for (int i = 0; i < ROUNDS; i++) {
+                    session.update(new SettingsSession.Update<Settings>() {
+                        @Override
+                        public SettingsSession.State<Settings> apply(SettingsSession.State<Settings> current) {
+                            return new SettingsSession.State<>(current.passcode, current.snapshot,
+                                    current.lockTimeout + 1);
+                        }
+                    });
+                }
+                return null;
+            }
+        });
+        assertEquals(THREADS * ROUNDS, session.get().lockTimeout);
+    }
+
+    @Test
+    public void neverShowsTornState() throws Exception {
+        List<Settings> lastSaves = hammer(new Callable<Settings>() {
+            @Override
+            public Settings call() {
+                Random random = new Random(Thread.currentThread().getId());
+                Settings last = null;
+                for (int i = 0; i < ROUNDS; i++) {
+                    // Passcodes are shared between threads, so unlocks and caches interleave
+                    // with saves of the same session.
+                    String passcode = "p" + random.nextInt(4);
+                    switch (random.nextInt(6)) {
+                        case 0:
+                            last = new Settings(passcode, random.nextInt(100));
+                            session.save(last.passcode, last, last.lockTimeout);
+                            break;
+                        case 1:
+                            session.unlock(passcode);
+                            break;
+                        case 2:
+                            session.cache(passcode, new Settings(passcode, -1));
+                            break;
+                        case 3:
+                            session.clearSnapshot();
+                            break;
+                        case 4:
+                            session.lock();
+                            break;
+                        default:
+                            break;
+                    }
+
+                    SettingsSession.State<Settings> state = session.get();
+                    if (state.snapshot != null) {
+                        // Settings are only ever seen with the passcode they belong to...
+                        assertEquals(state.snapshot.passcode, state.passcode);
+                        // ...and saved ones with their own lock timeout.
+                        if (state.snapshot.lockTimeout >= 0) {
+                            assertEquals(state.snapshot.lockTimeout, state.lockTimeout);
+                        }
+                    }
+                }
+
+                last = new Settings("final", (int) Thread.currentThread().getId());
+                session.save(last.passcode, last, last.lockTimeout);
+                return last;
+            }
+        });
+
+        // The last write wins as a whole: one thread's final save, not a mix of several.
+        SettingsSession.State<Settings> state = session.get();
+        boolean fromOneSave = false;
+        for (Settings save : lastSaves) {
+            if (state.snapshot == save) {
+                fromOneSave = true;
+                assertEquals(save.lockTimeout, state.lockTimeout);
+            }
+        }
+        assertTrue(fromOneSave);
+    }
+
+    @Test
+    public void cachesOnlyForTheSameSession() {
+        session.unlock("a");
+        Settings decrypted = new Settings("a", -1);
+        // Locked while the KDF was running: the result is returned, but not kept.
+        session.lock();
+        assertSame(decrypted, session.cache("a", decrypted));
+        assertNull(session.get().snapshot);
+
+        session.unlock("a");
+        assertSame(decrypted, session.cache("a", decrypted));
+        assertSame(decrypted, session.get().snapshot);
+        // A later decryption doesn't replace the cached settings.
+        assertSame(decrypted, session.cache("a", new Settings("a", -1)));
+    }
+
+    @Test
+    public void savedLockTimeoutWinsOverStoredOne() {
+        Settings saved = new Settings("a", 5);
+        session.save(saved.passcode, saved, saved.lockTimeout);
+        assertEquals(5, session.loadLockTimeout(30));
+        session.lock();
+        assertEquals(5, session.get().lockTimeout);
+    }
+}
@@ -0,0 +1,57 @@
+package com.syndes.javacomponents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Crypter batch API: one key derivation for the whole batch, HKDF subkey per record.
+ * Per-record cost is (score(N) - score(1)) / (N - 1); compare with CrypterBenchmark.encrypt
+ * at size 64, which pays a full key derivation per message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int records;
+
+    private List<String> plaintexts;
+    private String batch;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        plaintexts = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            plaintexts.add(Payloads.text(64));
+        }
+        batch = Crypter.encryptBatch(Payloads.PASSWORD.toCharArray(), plaintexts);
+    }
+
+    @Benchmark
+    public String encryptBatch() throws GeneralSecurityException {
+        return Crypter.encryptBatch(Payloads.PASSWORD.toCharArray(), plaintexts);
+    }
+
+    @Benchmark
+    public List<String> decryptBatch() throws GeneralSecurityException {
+        return Crypter.decryptBatch(Payloads.PASSWORD.toCharArray(), batch);
+    }
+}
@@ -0,0 +1,70 @@
+package com.syndes.javacomponents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The full text cascade behind MainActivity's Encrypt/Decrypt buttons.
+ *
+ * "stringCascade" is the original two-stage path: Crypter.encrypt to text, then the
+ * 95-kanji Crypter2 mapping. "pipeline" is CryptoPipeline (binary envelope + dense codec
+ * in one buffer), which the buttons use now. Compare gc.alloc.rate.norm for bytes per op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class CascadeBenchmark {
+
+    @Param({"16", "1024", "65536", "1048576", "16777216", "67108864"})
+    public int size;
+
+    private final CryptoPipeline pipeline = new CryptoPipeline();
+
+    private String text;
+    private String stringCascadeOutput;
+    private String pipelineOutput;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        text = Payloads.text(size);
+        stringCascadeOutput = stringCascadeEncrypt();
+        pipelineOutput = pipelineEncrypt();
+    }
+
+    @Benchmark
+    public String stringCascadeEncrypt() throws GeneralSecurityException {
+        String first = Crypter.encrypt(Payloads.PASSWORD, text);
+        return Crypter2.encrypt(null, first);
+    }
+
+    @Benchmark
+    public String stringCascadeDecrypt() throws GeneralSecurityException {
+        String first = Crypter2.decrypt(null, stringCascadeOutput);
+        return Crypter.decrypt(Payloads.PASSWORD, first);
+    }
+
+    @Benchmark
+    public String pipelineEncrypt() throws GeneralSecurityException {
+        return pipeline.encrypt(Payloads.PASSWORD.toCharArray(), text);
+    }
+
+    @Benchmark
+    public String pipelineDecrypt() throws GeneralSecurityException {
+        return pipeline.decrypt(Payloads.PASSWORD.toCharArray(), pipelineOutput);
+    }
+}
@@ -0,0 +1,49 @@
+package com.syndes.javacomponents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Latency of the very first encrypt + decrypt in a fresh JVM, with and without CryptoWarmup
+ * run beforehand (as the splash screen does). Every fork is a cold start, so the score is
+ * the average over forks of one single-shot measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class ColdStartBenchmark {
+
+    @Param({"false", "true"})
+    public boolean warmedUp;
+
+    private final String text = Payloads.text(1024);
+
+    @Setup(Level.Trial)
+    public void setUp() throws GeneralSecurityException {
+        if (warmedUp) {
+            CryptoWarmup.run();
+        }
+    }
+
+    @Benchmark
+    public String firstEncryptDecrypt() throws GeneralSecurityException {
+        String encrypted = Crypter.encrypt(Payloads.PASSWORD, text);
+        return Crypter.decrypt(Payloads.PASSWORD, encrypted);
+    }
+}
@@ -0,0 +1,63 @@
+package com.syndes.javacomponents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Crypter2 codecs: 95-kanji text mode and the dense 14-bit byte mode.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Crypter2Benchmark {
+
+    @Param({"16", "1024", "65536", "1048576", "16777216", "67108864"})
+    public int size;
+
+    private String text;
+    private String kanji;
+    private byte[] bytes;
+    private String dense;
+
+    @Setup
+    public void setUp() {
+        text = Payloads.text(size);
+        kanji = Crypter2.encrypt(null, text);
+        bytes = Payloads.bytes(size);
+        dense = Crypter2.encodeBytes(bytes);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return Crypter2.encrypt(null, text);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return Crypter2.decrypt(null, kanji);
+    }
+
+    @Benchmark
+    public String encodeBytes() {
+        return Crypter2.encodeBytes(bytes);
+    }
+
+    @Benchmark
+    public byte[] decodeBytes() {
+        return Crypter2.decodeBytes(dense);
+    }
+}
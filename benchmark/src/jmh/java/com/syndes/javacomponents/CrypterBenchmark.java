@@ -0,0 +1,64 @@
+package com.syndes.javacomponents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Crypter: text API (armored v2) and binary envelope API, KDF included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class CrypterBenchmark {
+
+    @Param({"16", "1024", "65536", "1048576", "16777216", "67108864"})
+    public int size;
+
+    private String text;
+    private String encryptedText;
+    private byte[] bytes;
+    private byte[] envelope;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        text = Payloads.text(size);
+        encryptedText = Crypter.encrypt(Payloads.PASSWORD, text);
+        bytes = Payloads.bytes(size);
+        envelope = Crypter.encryptToEnvelope(Payloads.PASSWORD.toCharArray(), bytes);
+    }
+
+    @Benchmark
+    public String encrypt() throws GeneralSecurityException {
+        return Crypter.encrypt(Payloads.PASSWORD, text);
+    }
+
+    @Benchmark
+    public String decrypt() throws GeneralSecurityException {
+        return Crypter.decrypt(Payloads.PASSWORD, encryptedText);
+    }
+
+    @Benchmark
+    public byte[] encryptToEnvelope() throws GeneralSecurityException {
+        return Crypter.encryptToEnvelope(Payloads.PASSWORD.toCharArray(), bytes);
+    }
+
+    @Benchmark
+    public byte[] decryptEnvelope() throws GeneralSecurityException {
+        return Crypter.decryptEnvelope(Payloads.PASSWORD.toCharArray(), envelope);
+    }
+}
@@ -0,0 +1,46 @@
+package com.syndes.javacomponents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/*
+ * Cost of one key derivation with the production iteration count: the in-house Pbkdf2 engine
+ * against the JCA provider it replaced. Note that HotSpot has SHA-256 intrinsics that ART lacks;
+ * run with -XX:+UnlockDiagnosticVMOptions -XX:-UseSHA256Intrinsics for a closer picture of a device.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KdfBenchmark {
+
+    private final byte[] salt = Payloads.bytes(Crypter.SALT_LENGTH_BYTES);
+
+    @Benchmark
+    public byte[] deriveKey() throws GeneralSecurityException {
+        return Crypter.deriveKey(Payloads.PASSWORD.toCharArray(), salt,
+                Crypter.PBKDF2_ITERATIONS);
+    }
+
+    @Benchmark
+    public byte[] jcaBaseline() throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(Payloads.PASSWORD.toCharArray(), salt,
+                Crypter.PBKDF2_ITERATIONS, 256);
+        return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+    }
+}
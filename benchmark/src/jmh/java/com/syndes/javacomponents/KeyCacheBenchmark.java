@@ -0,0 +1,51 @@
+package com.syndes.javacomponents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Repeated decrypt of the same short ciphertext with the derived-key cache off and on.
+ * With the cache on, every call after the first skips the KDF.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class KeyCacheBenchmark {
+
+    @Param({"0", "8"})
+    public int capacity;
+
+    private String encryptedText;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        Crypter.setKeyCacheCapacity(capacity);
+        encryptedText = Crypter.encrypt(Payloads.PASSWORD, Payloads.text(1024));
+    }
+
+    @TearDown
+    public void tearDown() {
+        Crypter.setKeyCacheCapacity(0);
+    }
+
+    @Benchmark
+    public String decrypt() throws GeneralSecurityException {
+        return Crypter.decrypt(Payloads.PASSWORD, encryptedText);
+    }
+}
@@ -0,0 +1,45 @@
+package com.syndes.javacomponents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Salt and IV for one message: a new SecureRandom per call, as Crypter did before,
+ * against the shared Nonces pool and counter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class NonceBenchmark {
+
+    @Benchmark
+    public void perCallSecureRandom(Blackhole blackhole) {
+        SecureRandom rnd = new SecureRandom();
+        byte[] salt = new byte[Crypter.SALT_LENGTH_BYTES];
+        rnd.nextBytes(salt);
+        byte[] iv = new byte[12];
+        rnd.nextBytes(iv);
+        blackhole.consume(salt);
+        blackhole.consume(iv);
+    }
+
+    @Benchmark
+    public void nonces(Blackhole blackhole) {
+        blackhole.consume(Nonces.salt(Crypter.SALT_LENGTH_BYTES));
+        blackhole.consume(Nonces.nonce(12));
+    }
+}
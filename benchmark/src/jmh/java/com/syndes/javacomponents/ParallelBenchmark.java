@@ -0,0 +1,63 @@
+package com.syndes.javacomponents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Segment-parallel encryption against the single-shot cipher.doFinal of the v2 envelope.
+ * Both sides include one key derivation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ParallelBenchmark {
+
+    @Param({"1048576", "16777216", "67108864"})
+    public int size;
+
+    private byte[] bytes;
+    private byte[] envelope;
+    private byte[] segmented;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        bytes = Payloads.bytes(size);
+        envelope = Crypter.encryptToEnvelope(Payloads.PASSWORD.toCharArray(), bytes);
+        segmented = ParallelCrypter.encrypt(bytes, Payloads.PASSWORD.toCharArray());
+    }
+
+    @Benchmark
+    public byte[] singleShotEncrypt() throws GeneralSecurityException {
+        return Crypter.encryptToEnvelope(Payloads.PASSWORD.toCharArray(), bytes);
+    }
+
+    @Benchmark
+    public byte[] singleShotDecrypt() throws GeneralSecurityException {
+        return Crypter.decryptEnvelope(Payloads.PASSWORD.toCharArray(), envelope);
+    }
+
+    @Benchmark
+    public byte[] parallelEncrypt() throws GeneralSecurityException {
+        return ParallelCrypter.encrypt(bytes, Payloads.PASSWORD.toCharArray());
+    }
+
+    @Benchmark
+    public byte[] parallelDecrypt() throws GeneralSecurityException {
+        return ParallelCrypter.decrypt(segmented, Payloads.PASSWORD.toCharArray());
+    }
+}
@@ -0,0 +1,32 @@
+package com.syndes.javacomponents;
+
+import java.util.Random;
+
+/*
+ * Deterministic benchmark inputs.
+ */
+final class Payloads {
+
+    static final String PASSWORD = "jn@32+iQm9";
+
+    private Payloads() {
+    }
+
+    /*
+     * Printable ASCII text, the kind of input users type into the text box.
+     */
+    static String text(int length) {
+        Random random = new Random(length);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (32 + random.nextInt(95));
+        }
+        return new String(chars);
+    }
+
+    static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,68 @@
+package com.syndes.javacomponents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * One text for several passwords: the whole cascade once per password, against
+ * Crypter.encryptForRecipients, which encrypts the text once and wraps its key per password.
+ * Both pay a key derivation per password; the difference is the bulk work.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class RecipientsBenchmark {
+
+    @Param({"1", "4"})
+    public int recipients;
+
+    @Param({"65536", "4194304"})
+    public int size;
+
+    private final CryptoPipeline pipeline = new CryptoPipeline();
+    private String plaintext;
+
+    @Setup
+    public void setUp() {
+        plaintext = Payloads.text(size);
+    }
+
+    @Benchmark
+    public List<String> cascadePerPassword() throws GeneralSecurityException {
+        List<String> ciphertexts = new ArrayList<>(recipients);
+        for (int i = 0; i < recipients; i++) {
+            ciphertexts.add(pipeline.encrypt(password(i), plaintext));
+        }
+        return ciphertexts;
+    }
+
+    @Benchmark
+    public String encryptForRecipients() throws GeneralSecurityException {
+        List<char[]> passwords = new ArrayList<>(recipients);
+        for (int i = 0; i < recipients; i++) {
+            passwords.add(password(i));
+        }
+        return Crypter.encryptForRecipients(passwords, plaintext);
+    }
+
+    private static char[] password(int recipient) {
+        return (Payloads.PASSWORD + recipient).toCharArray();
+    }
+}
@@ -0,0 +1,39 @@
+package com.syndes.javacomponents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Wall-clock cost of scrypt as the number of lanes grows (N = 2^14, r = 8, 16 MiB per lane).
+ * Up to the core count the time should stay close to the single-lane time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScryptBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private final Scrypt scrypt = new Scrypt();
+    private final byte[] salt = Payloads.bytes(Crypter.SALT_LENGTH_BYTES);
+
+    @Benchmark
+    public byte[] deriveKey() {
+        return scrypt.derive(Payloads.PASSWORD.toCharArray(), salt,
+                Scrypt.cost(14, Scrypt.DEFAULT_BLOCK_SIZE, parallelism), 32, null);
+    }
+}
@@ -0,0 +1,124 @@
+package com.syndes.javacomponents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Cold-start load and save of the settings: the binary SettingsStore against the XML file
+ * SharedPreferences kept them in. SharedPreferences itself needs Android, so the XML side is
+ * Properties XML with the same content (the Base-64 settings record and the plain ints),
+ * parsed in full on load and written with fsync and rename on save, as SharedPreferences does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SettingsStoreBenchmark {
+
+    // The keys the app uses (Constants lives in the app module).
+    private static final String RECORD_KEY = "SettingsRecordKey";
+    private static final String LOCK_TIMEOUT_KEY = "LockTimeoutSettingsKey";
+    private static final String KDF_ITERATIONS_KEY = "KdfIterationsSettingsKey";
+    private static final String KDF_SCRYPT_COST_KEY = "KdfScryptCostSettingsKey";
+
+    private File directory;
+    private File binaryFile;
+    private File xmlFile;
+
+    private byte[] record;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("settings").toFile();
+        binaryFile = new File(directory, "settings.bin");
+        xmlFile = new File(directory, "settings.xml");
+
+        Crypter.setIterations(KdfCalibrator.MIN_CALIBRATED_ITERATIONS);
+        record = Crypter.encryptToEnvelope(Payloads.PASSWORD.toCharArray(),
+                Payloads.bytes(96));
+
+        saveBinary();
+        saveXml();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public byte[] loadBinary() throws IOException {
+        return SettingsStore.open(binaryFile).getBytes(RECORD_KEY);
+    }
+
+    @Benchmark
+    public String loadXml() throws IOException {
+        Properties properties = new Properties();
+        FileInputStream input = new FileInputStream(xmlFile);
+        try {
+            properties.loadFromXML(input);
+        } finally {
+            input.close();
+        }
+        return properties.getProperty(RECORD_KEY);
+    }
+
+    @Benchmark
+    public void saveBinary() throws IOException {
+        SettingsStore.empty(binaryFile).edit()
+                .putBytes(RECORD_KEY, record)
+                .putInt(LOCK_TIMEOUT_KEY, counter++)
+                .putInt(KDF_ITERATIONS_KEY, Crypter.getIterations())
+                .putInt(KDF_SCRYPT_COST_KEY, 0)
+                .commit();
+    }
+
+    @Benchmark
+    public void saveXml() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(RECORD_KEY, Armor.encode(record));
+        properties.setProperty(LOCK_TIMEOUT_KEY, Integer.toString(counter++));
+        properties.setProperty(KDF_ITERATIONS_KEY,
+                Integer.toString(Crypter.getIterations()));
+        properties.setProperty(KDF_SCRYPT_COST_KEY, "0");
+
+        File temp = new File(directory, "settings.xml.tmp");
+        FileOutputStream output = new FileOutputStream(temp);
+        try {
+            properties.storeToXML(output, null);
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+        if (!temp.renameTo(xmlFile)) {
+            throw new IOException("Couldn't replace " + xmlFile);
+        }
+    }
+}
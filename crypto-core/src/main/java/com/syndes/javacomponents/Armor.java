@@ -0,0 +1,122 @@
+package com.syndes.javacomponents;
+
+/**
+ * Armor — необязательный последний этап: текстовое представление бинарного контейнера
+ * {@link Envelope} для буфера обмена и текстовых полей. Один Base64 на весь контейнер.
+ *
+ * Собственный табличный кодек Base64 (RFC 4648, стандартный алфавит, без переносов строк):
+ * не зависит от android.util.Base64 и работает на любой JVM. Результат совпадает
+ * с Base64.NO_WRAP. При декодировании пробелы и переводы строк пропускаются,
+ * дополнение '=' необязательно, прочие символы — ошибка.
+ */
+public final class Armor {
+
+    private Armor() { /* static only */ }
+
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private static final byte INVALID = -1;
+    private static final byte SKIP    = -2;
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        java.util.Arrays.fill(DECODE, INVALID);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODE[ALPHABET[i]] = (byte) i;
+        }
+        DECODE[' '] = SKIP;
+        DECODE['\t'] = SKIP;
+        DECODE['\r'] = SKIP;
+        DECODE['\n'] = SKIP;
+    }
+
+    public static String encode(byte[] data) {
+        return encode(data, 0, data.length);
+    }
+
+    public static String encode(byte[] data, int offset, int length) {
+        char[] out = new char[(length + 2) / 3 * 4];
+        int pos = 0;
+        int i = offset;
+        int end = offset + length;
+
+        for (; end - i >= 3; i += 3) {
+            int bits = (data[i] & 0xFF) << 16 | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF);
+            out[pos++] = ALPHABET[bits >>> 18];
+            out[pos++] = ALPHABET[(bits >>> 12) & 0x3F];
+            out[pos++] = ALPHABET[(bits >>> 6) & 0x3F];
+            out[pos++] = ALPHABET[bits & 0x3F];
+        }
+
+        int rest = end - i;
+        if (rest > 0) {
+            int bits = (data[i] & 0xFF) << 16 | (rest == 2 ? (data[i + 1] & 0xFF) << 8 : 0);
+            out[pos++] = ALPHABET[bits >>> 18];
+            out[pos++] = ALPHABET[(bits >>> 12) & 0x3F];
+            out[pos++] = rest == 2 ? ALPHABET[(bits >>> 6) & 0x3F] : '=';
+            out[pos] = '=';
+        }
+        return new String(out);
+    }
+
+    /**
+     * @throws IllegalArgumentException если строка не является корректным Base64
+     */
+    public static byte[] decode(String text) {
+        int length = text.length();
+
+        // Первый проход — только подсчёт значащих символов, чтобы выделить массив точного размера.
+        int significant = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c != '=' && (c >= DECODE.length || DECODE[c] != SKIP)) {
+                significant++;
+            }
+        }
+        if (significant % 4 == 1) {
+            throw new IllegalArgumentException("bad base-64");
+        }
+
+        byte[] out = new byte[significant / 4 * 3 + Math.max(0, significant % 4 - 1)];
+        int pos = 0;
+        int bits = 0;
+        int count = 0;
+        int padding = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '=') {
+                padding++;
+                continue;
+            }
+            int value = c < DECODE.length ? DECODE[c] : INVALID;
+            if (value == SKIP) {
+                continue;
+            }
+            if (value == INVALID || padding > 0) {
+                throw new IllegalArgumentException("bad base-64");
+            }
+
+            bits = bits << 6 | value;
+            if (++count == 4) {
+                out[pos++] = (byte) (bits >>> 16);
+                out[pos++] = (byte) (bits >>> 8);
+                out[pos++] = (byte) bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+
+        if (padding > 2) {
+            throw new IllegalArgumentException("bad base-64");
+        }
+        if (count == 2) {
+            out[pos] = (byte) (bits >>> 4);
+        } else if (count == 3) {
+            out[pos++] = (byte) (bits >>> 10);
+            out[pos] = (byte) (bits >>> 2);
+        }
+        return out;
+    }
+}
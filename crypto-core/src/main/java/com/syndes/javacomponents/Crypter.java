@@ -0,0 +1,1081 @@
+package com.syndes.javacomponents;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+public class Crypter {
+
+    static final int SALT_LENGTH_BYTES            = 32;
+    private static final int IV_LENGTH_BYTES      = 12;
+    private static final int TAG_LENGTH_BITS      = 128;
+    // Число итераций по умолчанию; его же подразумевают форматы без этого поля (v1, s1).
+    static final int PBKDF2_ITERATIONS            = 75000;
+    private static final int KEY_LENGTH_BITS      = 256;
+    private static final String CIPHER_ALGORITHM  = "AES/GCM/NoPadding";
+    private static final String FORMAT_VERSION    = "v1";
+
+    private static final Kdf PBKDF2               = new Pbkdf2();
+    private static final Kdf SCRYPT               = new Scrypt();
+
+    // Выведенные ключи для повторных расшифровок; выключен, пока не задана ёмкость.
+    private static final KeyCache KEY_CACHE       = new KeyCache();
+
+    // Число итераций для новых шифротекстов (см. KdfCalibrator). Расшифровка берёт его из заголовка.
+    private static volatile int iterations        = PBKDF2_ITERATIONS;
+    // Параметры scrypt для новых контейнеров v2; 0 — scrypt не используется, только PBKDF2.
+    private static volatile int scryptCost        = 0;
+
+    // Допустимый диапазон числа итераций в заголовке v2 (защита от подделанных заголовков).
+    static final int MIN_ITERATIONS               = 10000;
+    static final int MAX_ITERATIONS               = 10000000;
+
+    // === Потоковый формат (STREAM): сегменты AES-GCM фиксированного размера ===
+    // Заголовок: "s2" || iterations(4, big-endian) || salt(32) || nonce prefix(7); он же AAD
+    // каждого сегмента. Старый "s1" — то же без iterations (подразумевается 75000), только чтение.
+    // Nonce сегмента: prefix(7) || counter(4, big-endian) || last flag(1).
+    static final String STREAM_FORMAT_VERSION     = "s2";
+    static final String STREAM_V1_FORMAT_VERSION  = "s1";
+    static final int STREAM_VERSION_BYTES         = 2;
+    static final int STREAM_SEGMENT_BYTES         = 64 * 1024;
+    static final int STREAM_NONCE_PREFIX_BYTES    = 7;
+    static final int TAG_LENGTH_BYTES             = TAG_LENGTH_BITS / 8;
+    static final int STREAM_HEADER_BYTES          =
+            STREAM_VERSION_BYTES + 4 + SALT_LENGTH_BYTES + STREAM_NONCE_PREFIX_BYTES;
+    static final int STREAM_V1_HEADER_BYTES       =
+            STREAM_VERSION_BYTES + SALT_LENGTH_BYTES + STREAM_NONCE_PREFIX_BYTES;
+
+    // === Пакетный формат: один вывод ключа на много коротких записей ===
+    // Заголовок: magic(1) || version 3(1) || kdf id(1) || iterations(4) || salt(32) || count(4).
+    // Запись: nonce(16) || length(4) || ciphertext+tag(length). Ключ и IV записи (AES-GCM) —
+    // HKDF(мастер-ключ, nonce); AAD записи — заголовок и её номер, так что записи нельзя
+    // переставить или перенести в другой пакет, но каждая проверяется сама по себе.
+    static final byte BATCH_VERSION               = 3;
+    static final int BATCH_HEADER_BYTES           = 1 + 1 + 1 + 4 + SALT_LENGTH_BYTES + 4;
+    static final int BATCH_NONCE_BYTES            = 16;
+    private static final byte[] BATCH_HKDF_INFO   =
+            "SimpleTextCrypt batch record".getBytes(StandardCharsets.US_ASCII);
+
+    // === Контейнер для нескольких получателей: текст шифруется один раз ===
+    // Заголовок: magic(1) || version 4(1) || kdf id(1) || iterations(4) || salt(32) || count(1).
+    // Таблица получателей: count раз iv(12) || AES-GCM(ключ пароля, ключ данных)(32 + 16);
+    // AAD обёртки — заголовок. Соль общая, так что расшифровка выводит ключ один раз и
+    // перебирает обёртки. Затем iv(12) || AES-GCM(ключ данных, текст); AAD — заголовок и таблица.
+    static final byte RECIPIENTS_VERSION          = 4;
+    static final int RECIPIENTS_HEADER_BYTES      = 1 + 1 + 1 + 4 + SALT_LENGTH_BYTES + 1;
+    static final int RECIPIENT_BYTES              = IV_LENGTH_BYTES + KEY_LENGTH_BITS / 8 + TAG_LENGTH_BYTES;
+    static final int MAX_RECIPIENTS               = 255;
+
+    /**
+     * Включает кэш выведенных ключей на capacity записей (0 — выключить и затереть кэш).
+     * С кэшем повторная расшифровка с тем же паролем и солью не запускает KDF.
+     * Ключи лежат в памяти, пока не вытеснены или не вызван {@link #clearKeyCache()}:
+     * его стоит вызывать при блокировке приложения и нехватке памяти.
+     */
+    public static void setKeyCacheCapacity(int capacity) {
+        KEY_CACHE.setCapacity(capacity);
+    }
+
+    /** Затирает все ключи в кэше. */
+    public static void clearKeyCache() {
+        KEY_CACHE.clear();
+    }
+
+    public static long getKeyCacheHits() {
+        return KEY_CACHE.hits();
+    }
+
+    public static long getKeyCacheMisses() {
+        return KEY_CACHE.misses();
+    }
+
+    /**
+     * Задаёт число итераций PBKDF2 для новых шифротекстов (обычно результат
+     * {@link KdfCalibrator#calibrate}). Уже созданные шифротексты не затрагиваются:
+     * число итераций записано в их заголовке.
+     */
+    public static void setIterations(int count) {
+        if (count < MIN_ITERATIONS || count > MAX_ITERATIONS) {
+            throw new IllegalArgumentException("Invalid iteration count");
+        }
+        iterations = count;
+    }
+
+    public static int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Включает scrypt ({@link Scrypt#cost}) для новых контейнеров v2; 0 — вернуться к PBKDF2.
+     * Потоковый формат по-прежнему использует PBKDF2 с {@link #getIterations()}.
+     */
+    public static void setScryptCost(int cost) {
+        if (cost != 0) {
+            Scrypt.checkCost(cost);
+        }
+        scryptCost = cost;
+    }
+
+    public static int getScryptCost() {
+        return scryptCost;
+    }
+
+    // === Перегрузка: удобный интерфейс для String паролей ===
+    public static String encrypt(String password, String plaintext)
+            throws GeneralSecurityException {
+        return encrypt(password != null ? password.toCharArray() : null, plaintext);
+    }
+
+    public static String decrypt(String password, String input)
+            throws GeneralSecurityException {
+        return decrypt(password != null ? password.toCharArray() : null, input);
+    }
+
+    // === Основные безопасные методы с char[] ===
+
+    /**
+     * Шифрует текст в контейнер v2 ({@link Envelope}) и возвращает его текстовое
+     * представление ({@link Armor}).
+     */
+    public static String encrypt(char[] password, String plaintext)
+            throws GeneralSecurityException {
+        return encrypt(password, plaintext, null);
+    }
+
+    /**
+     * То же, что {@link #encrypt(char[], String)}, с ходом и отменой вывода ключа.
+     * @param progress может быть null
+     * @throws java.util.concurrent.CancellationException если вычисление отменено
+     */
+    public static String encrypt(char[] password, String plaintext, Kdf.Progress progress)
+            throws GeneralSecurityException {
+
+        if (password == null || plaintext == null || plaintext.isEmpty()) {
+            throw new IllegalArgumentException("Password and plaintext must be non-null and non-empty");
+        }
+
+        byte[] plainBytes = plaintext.getBytes(StandardCharsets.UTF_8);
+        try {
+            return Armor.encode(encryptToEnvelope(password, plainBytes, progress));
+        } finally {
+            java.util.Arrays.fill(plainBytes, (byte) 0);
+        }
+    }
+
+    /**
+     * Расшифровывает текст, созданный {@link #encrypt} или {@link #encryptForRecipients}:
+     * v2 ({@link Armor} + {@link Envelope}), контейнер для нескольких получателей
+     * и старый формат "v1:salt:iv:ct".
+     */
+    public static String decrypt(char[] password, String input)
+            throws GeneralSecurityException {
+        return decrypt(password, input, null);
+    }
+
+    /**
+     * То же, что {@link #decrypt(char[], String)}, с ходом и отменой вывода ключа.
+     * @param progress может быть null
+     * @throws java.util.concurrent.CancellationException если вычисление отменено
+     */
+    public static String decrypt(char[] password, String input, Kdf.Progress progress)
+            throws GeneralSecurityException {
+
+        if (password == null || input == null) {
+            throw new IllegalArgumentException("Password and input must be non-null");
+        }
+
+        if (input.startsWith(FORMAT_VERSION + ":")) {
+            return decryptV1(password, input, progress);
+        }
+
+        byte[] data;
+        try {
+            data = Armor.decode(input);
+        } catch (IllegalArgumentException error) {
+            java.util.Arrays.fill(password, '\0');
+            throw new IllegalArgumentException("Invalid input format or version");
+        }
+
+        byte[] plainBytes = decryptEnvelope(password, data, progress);
+        try {
+            return new String(plainBytes, StandardCharsets.UTF_8);
+        } finally {
+            java.util.Arrays.fill(plainBytes, (byte) 0);
+        }
+    }
+
+    // === Бинарный контейнер v2 ===
+
+    /**
+     * Шифрует байты в бинарный контейнер v2. Заголовок контейнера — AAD.
+     */
+    public static byte[] encryptToEnvelope(char[] password, byte[] plaintext)
+            throws GeneralSecurityException {
+        return encryptToEnvelope(password, plaintext, null);
+    }
+
+    /**
+     * То же, что {@link #encryptToEnvelope(char[], byte[])}, с ходом и отменой вывода ключа.
+     * @param progress может быть null
+     */
+    public static byte[] encryptToEnvelope(char[] password, byte[] plaintext, Kdf.Progress progress)
+            throws GeneralSecurityException {
+
+        if (password == null || plaintext == null) {
+            throw new IllegalArgumentException("Password and plaintext must be non-null");
+        }
+
+        byte[] output = new byte[Envelope.HEADER_BYTES + plaintext.length + TAG_LENGTH_BYTES];
+        System.arraycopy(plaintext, 0, output, Envelope.HEADER_BYTES, plaintext.length);
+        encryptEnvelopeInPlace(password, output, plaintext.length, progress);
+        return output;
+    }
+
+    /**
+     * Шифрует в контейнер v2 на месте, без промежуточных массивов.
+     * Открытый текст лежит в buffer начиная с {@link Envelope#HEADER_BYTES}; буфер должен
+     * вмещать ещё {@link #TAG_LENGTH_BYTES} байт тега. Заголовок пишется в начало буфера.
+     * @param progress ход и отмена вывода ключа, может быть null
+     * @return длина контейнера
+     */
+    static int encryptEnvelopeInPlace(char[] password, byte[] buffer, int plaintextLength,
+                                      Kdf.Progress progress)
+            throws GeneralSecurityException {
+
+        if (password == null || buffer == null
+                || buffer.length < Envelope.HEADER_BYTES + plaintextLength + TAG_LENGTH_BYTES) {
+            throw new IllegalArgumentException("Password and buffer must be non-null and large enough");
+        }
+
+        byte[] salt = Nonces.salt(SALT_LENGTH_BYTES);
+        byte[] iv = Nonces.nonce(IV_LENGTH_BYTES);
+
+        int scrypt = scryptCost;
+        byte kdfId = scrypt != 0 ? Envelope.KDF_SCRYPT : Envelope.KDF_PBKDF2_HMAC_SHA256;
+        int cost = scrypt != 0 ? scrypt : iterations;
+        Envelope.encodeHeader(ByteBuffer.wrap(buffer), kdfId, cost, salt, iv);
+
+        byte[] key = null;
+        try {
+            key = deriveKey(password, salt, kdfId, cost, progress);
+            SecretKey secretKey = new SecretKeySpec(key, "AES");
+
+            Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+            GCMParameterSpec spec = new GCMParameterSpec(TAG_LENGTH_BITS, iv);
+            cipher.init(Cipher.ENCRYPT_MODE, secretKey, spec);
+            cipher.updateAAD(buffer, 0, Envelope.HEADER_BYTES);
+
+            return Envelope.HEADER_BYTES + cipher.doFinal(buffer, Envelope.HEADER_BYTES,
+                    plaintextLength, buffer, Envelope.HEADER_BYTES);
+
+        } finally {
+            if (key != null) java.util.Arrays.fill(key, (byte) 0);
+            java.util.Arrays.fill(password, '\0');
+        }
+    }
+
+    /**
+     * Расшифровывает контейнер v2 из buffer[0..length) на месте.
+     * Открытый текст оказывается в buffer начиная с {@link Envelope#HEADER_BYTES}.
+     * @param progress ход и отмена вывода ключа, может быть null
+     * @return длина открытого текста
+     */
+    static int decryptEnvelopeInPlace(char[] password, byte[] buffer, int length,
+                                      Kdf.Progress progress)
+            throws GeneralSecurityException {
+
+        if (password == null || buffer == null) {
+            throw new IllegalArgumentException("Password and input must be non-null");
+        }
+
+        if (isRecipients(ByteBuffer.wrap(buffer, 0, length))) {
+            // Заголовок с таблицей получателей длиннее заголовка v2: текст поместится.
+            byte[] plain = decryptRecipients(password, ByteBuffer.wrap(buffer, 0, length), progress);
+            System.arraycopy(plain, 0, buffer, Envelope.HEADER_BYTES, plain.length);
+            java.util.Arrays.fill(plain, (byte) 0);
+            return plain.length;
+        }
+
+        Envelope envelope = checkedEnvelope(password, ByteBuffer.wrap(buffer, 0, length));
+
+        byte[] salt = new byte[SALT_LENGTH_BYTES];
+        envelope.salt().get(salt);
+        byte[] iv = new byte[IV_LENGTH_BYTES];
+        envelope.iv().get(iv);
+
+        byte[] key = null;
+        try {
+            key = deriveKey(password, salt, envelope.kdfId(), envelope.iterations(), progress);
+            SecretKey secretKey = new SecretKeySpec(key, "AES");
+
+            Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+            GCMParameterSpec spec = new GCMParameterSpec(TAG_LENGTH_BITS, iv);
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, spec);
+            cipher.updateAAD(buffer, 0, Envelope.HEADER_BYTES);
+
+            return cipher.doFinal(buffer, Envelope.HEADER_BYTES, length - Envelope.HEADER_BYTES,
+                    buffer, Envelope.HEADER_BYTES);
+
+        } finally {
+            if (key != null) java.util.Arrays.fill(key, (byte) 0);
+            java.util.Arrays.fill(password, '\0');
+        }
+    }
+
+    /*
+     * Разбирает контейнер и проверяет параметры KDF. При ошибке затирает пароль.
+     */
+    private static Envelope checkedEnvelope(char[] password, ByteBuffer input) {
+        try {
+            Envelope envelope = Envelope.decode(input);
+            checkKdf(envelope.kdfId(), envelope.iterations());
+            return envelope;
+        } catch (IllegalArgumentException error) {
+            java.util.Arrays.fill(password, '\0');
+            throw error;
+        }
+    }
+
+    /*
+     * Параметры KDF из заголовка: вывод ключа идёт до проверки тега, поэтому проверяются заранее.
+     */
+    private static void checkKdf(byte kdfId, int cost) {
+        if (kdfId == Envelope.KDF_SCRYPT) {
+            Scrypt.checkCost(cost);
+        } else if (kdfId != Envelope.KDF_PBKDF2_HMAC_SHA256) {
+            throw new IllegalArgumentException("Unsupported KDF");
+        } else if (cost < MIN_ITERATIONS || cost > MAX_ITERATIONS) {
+            throw new IllegalArgumentException("Invalid iteration count");
+        }
+    }
+
+    public static byte[] decryptEnvelope(char[] password, byte[] input)
+            throws GeneralSecurityException {
+        return decryptEnvelope(password, input, null);
+    }
+
+    /**
+     * То же, что {@link #decryptEnvelope(char[], ByteBuffer, Kdf.Progress)}, для массива.
+     */
+    public static byte[] decryptEnvelope(char[] password, byte[] input, Kdf.Progress progress)
+            throws GeneralSecurityException {
+        if (input == null) {
+            throw new IllegalArgumentException("Password and input must be non-null");
+        }
+        return decryptEnvelope(password, ByteBuffer.wrap(input), progress);
+    }
+
+    public static byte[] decryptEnvelope(char[] password, ByteBuffer input)
+            throws GeneralSecurityException {
+        return decryptEnvelope(password, input, null);
+    }
+
+    /**
+     * Расшифровывает контейнер v2 или контейнер для нескольких получателей.
+     * Параметры KDF берутся из заголовка. Позиция буфера не меняется.
+     * @param progress ход и отмена вывода ключа, может быть null
+     * @throws java.util.concurrent.CancellationException если вычисление отменено
+     */
+    public static byte[] decryptEnvelope(char[] password, ByteBuffer input, Kdf.Progress progress)
+            throws GeneralSecurityException {
+
+        if (password == null || input == null) {
+            throw new IllegalArgumentException("Password and input must be non-null");
+        }
+
+        if (isRecipients(input)) {
+            return decryptRecipients(password, input.duplicate(), progress);
+        }
+
+        Envelope envelope = checkedEnvelope(password, input);
+
+        byte[] salt = new byte[SALT_LENGTH_BYTES];
+        envelope.salt().get(salt);
+        byte[] iv = new byte[IV_LENGTH_BYTES];
+        envelope.iv().get(iv);
+
+        byte[] key = null;
+        try {
+            key = deriveKey(password, salt, envelope.kdfId(), envelope.iterations(), progress);
+            SecretKey secretKey = new SecretKeySpec(key, "AES");
+
+            Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+            GCMParameterSpec spec = new GCMParameterSpec(TAG_LENGTH_BITS, iv);
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, spec);
+            cipher.updateAAD(envelope.header());
+
+            ByteBuffer ciphertext = envelope.ciphertext();
+            byte[] output = new byte[cipher.getOutputSize(ciphertext.remaining())];
+            int written = cipher.doFinal(ciphertext, ByteBuffer.wrap(output));
+            if (written != output.length) {
+                byte[] exact = java.util.Arrays.copyOf(output, written);
+                java.util.Arrays.fill(output, (byte) 0);
+                output = exact;
+            }
+            return output;
+
+        } finally {
+            if (key != null) java.util.Arrays.fill(key, (byte) 0);
+            java.util.Arrays.fill(password, '\0');
+        }
+    }
+
+    // === Пакет записей ===
+
+    /**
+     * Шифрует записи одним пакетом: ключ из пароля вырабатывается один раз на пакет,
+     * а каждая запись шифруется своим подключом (HKDF от мастер-ключа и уникального nonce).
+     * Стоимость записи — два HMAC и AES-GCM, микросекунды вместо полного вывода ключа.
+     * @return текстовое представление пакета ({@link Armor})
+     */
+    public static String encryptBatch(char[] password, List<String> plaintexts)
+            throws GeneralSecurityException {
+
+        if (password == null || plaintexts == null) {
+            throw new IllegalArgumentException("Password and plaintexts must be non-null");
+        }
+
+        int count = plaintexts.size();
+        byte[][] plain = new byte[count][];
+        try {
+            int total = BATCH_HEADER_BYTES;
+            for (int i = 0; i < count; i++) {
+                String text = plaintexts.get(i);
+                if (text == null) {
+                    throw new IllegalArgumentException("Plaintexts must be non-null");
+                }
+                plain[i] = text.getBytes(StandardCharsets.UTF_8);
+                total += BATCH_NONCE_BYTES + 4 + plain[i].length + TAG_LENGTH_BYTES;
+            }
+
+            byte[] salt = Nonces.salt(SALT_LENGTH_BYTES);
+
+            int scrypt = scryptCost;
+            byte kdfId = scrypt != 0 ? Envelope.KDF_SCRYPT : Envelope.KDF_PBKDF2_HMAC_SHA256;
+            int cost = scrypt != 0 ? scrypt : iterations;
+
+            byte[] output = new byte[total];
+            ByteBuffer out = ByteBuffer.wrap(output);
+            out.put(Envelope.MAGIC).put(BATCH_VERSION).put(kdfId).putInt(cost).put(salt).putInt(count);
+
+            byte[] master = null;
+            try {
+                master = deriveKey(password, salt, kdfId, cost);
+                Hkdf hkdf = new Hkdf();
+                Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+                for (int i = 0; i < count; i++) {
+                    byte[] nonce = Nonces.nonce(BATCH_NONCE_BYTES);
+                    out.put(nonce).putInt(plain[i].length + TAG_LENGTH_BYTES);
+                    initBatchCipher(cipher, Cipher.ENCRYPT_MODE, hkdf, master, nonce, output, i);
+                    int written = cipher.doFinal(plain[i], 0, plain[i].length, output, out.position());
+                    out.position(out.position() + written);
+                }
+            } finally {
+                if (master != null) java.util.Arrays.fill(master, (byte) 0);
+                java.util.Arrays.fill(password, '\0');
+            }
+            return Armor.encode(output);
+
+        } finally {
+            for (byte[] bytes : plain) {
+                if (bytes != null) java.util.Arrays.fill(bytes, (byte) 0);
+            }
+        }
+    }
+
+    /**
+     * Расшифровывает пакет, созданный {@link #encryptBatch}, в исходном порядке записей.
+     * @throws AEADBadTagException если пароль неверен или хоть одна запись изменена
+     */
+    public static List<String> decryptBatch(char[] password, String input)
+            throws GeneralSecurityException {
+
+        if (password == null || input == null) {
+            throw new IllegalArgumentException("Password and input must be non-null");
+        }
+
+        ByteBuffer in;
+        byte kdfId;
+        int cost;
+        int count;
+        byte[] salt = new byte[SALT_LENGTH_BYTES];
+        try {
+            byte[] data = Armor.decode(input);
+            in = ByteBuffer.wrap(data);
+            if (data.length < BATCH_HEADER_BYTES || in.get() != Envelope.MAGIC
+                    || in.get() != BATCH_VERSION) {
+                throw new IllegalArgumentException("Invalid input format or version");
+            }
+            kdfId = in.get();
+            cost = in.getInt();
+            in.get(salt);
+            count = in.getInt();
+            // Каждая запись занимает хотя бы nonce, длину и тег.
+            if (count < 0 || count > in.remaining() / (BATCH_NONCE_BYTES + 4 + TAG_LENGTH_BYTES)) {
+                throw new IllegalArgumentException("Invalid record count");
+            }
+            checkKdf(kdfId, cost);
+        } catch (IllegalArgumentException error) {
+            java.util.Arrays.fill(password, '\0');
+            throw error;
+        }
+
+        byte[] data = in.array();
+        List<String> plaintexts = new ArrayList<>(count);
+        byte[] master = null;
+        try {
+            master = deriveKey(password, salt, kdfId, cost);
+            Hkdf hkdf = new Hkdf();
+            Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+            byte[] nonce = new byte[BATCH_NONCE_BYTES];
+            for (int i = 0; i < count; i++) {
+                if (in.remaining() < BATCH_NONCE_BYTES + 4) {
+                    throw new AEADBadTagException("Truncated batch");
+                }
+                in.get(nonce);
+                int length = in.getInt();
+                if (length < TAG_LENGTH_BYTES || length > in.remaining()) {
+                    throw new AEADBadTagException("Truncated batch");
+                }
+                initBatchCipher(cipher, Cipher.DECRYPT_MODE, hkdf, master, nonce, data, i);
+                byte[] plain = cipher.doFinal(data, in.position(), length);
+                in.position(in.position() + length);
+                plaintexts.add(new String(plain, StandardCharsets.UTF_8));
+                java.util.Arrays.fill(plain, (byte) 0);
+            }
+            if (in.hasRemaining()) {
+                throw new AEADBadTagException("Trailing data after batch");
+            }
+            return plaintexts;
+
+        } finally {
+            if (master != null) java.util.Arrays.fill(master, (byte) 0);
+            java.util.Arrays.fill(password, '\0');
+        }
+    }
+
+    /*
+     * Ключ и IV записи index из мастер-ключа и её nonce; AAD — заголовок пакета и номер записи.
+     */
+    private static void initBatchCipher(Cipher cipher, int mode, Hkdf hkdf, byte[] master,
+                                        byte[] nonce, byte[] batch, int index)
+            throws GeneralSecurityException {
+        byte[] keyAndIv = hkdf.derive(master, nonce, BATCH_HKDF_INFO,
+                KEY_LENGTH_BITS / 8 + IV_LENGTH_BYTES);
+        try {
+            cipher.init(mode, new SecretKeySpec(keyAndIv, 0, KEY_LENGTH_BITS / 8, "AES"),
+                    new GCMParameterSpec(TAG_LENGTH_BITS, keyAndIv, KEY_LENGTH_BITS / 8, IV_LENGTH_BYTES));
+            cipher.updateAAD(batch, 0, BATCH_HEADER_BYTES);
+            cipher.updateAAD(ByteBuffer.allocate(4).putInt(index).array());
+        } finally {
+            java.util.Arrays.fill(keyAndIv, (byte) 0);
+        }
+    }
+
+    // === Несколько получателей ===
+
+    /**
+     * Шифрует текст для нескольких паролей: текст шифруется один раз случайным ключом данных,
+     * а этот ключ — отдельно ключом каждого пароля. Расшифровать может любой из паролей
+     * обычным {@link #decrypt}. Пароли затираются.
+     * @return текстовое представление контейнера ({@link Armor})
+     */
+    public static String encryptForRecipients(List<char[]> passwords, String plaintext)
+            throws GeneralSecurityException {
+
+        if (plaintext == null || plaintext.isEmpty()) {
+            throw new IllegalArgumentException("Plaintext must be non-null and non-empty");
+        }
+
+        byte[] plainBytes = plaintext.getBytes(StandardCharsets.UTF_8);
+        try {
+            return Armor.encode(encryptForRecipients(passwords, plainBytes));
+        } finally {
+            java.util.Arrays.fill(plainBytes, (byte) 0);
+        }
+    }
+
+    /**
+     * Бинарный вариант {@link #encryptForRecipients(List, String)}. Стоимость — вывод ключа
+     * на каждый пароль и одно шифрование текста, а не весь шифр на каждый пароль.
+     */
+    public static byte[] encryptForRecipients(List<char[]> passwords, byte[] plaintext)
+            throws GeneralSecurityException {
+
+        if (passwords == null || plaintext == null) {
+            throw new IllegalArgumentException("Passwords and plaintext must be non-null");
+        }
+        int count = passwords.size();
+        try {
+            if (count < 1 || count > MAX_RECIPIENTS) {
+                throw new IllegalArgumentException("Invalid number of recipients");
+            }
+            for (char[] password : passwords) {
+                if (password == null) {
+                    throw new IllegalArgumentException("Passwords must be non-null");
+                }
+            }
+        } catch (IllegalArgumentException error) {
+            wipe(passwords);
+            throw error;
+        }
+
+        byte[] salt = Nonces.salt(SALT_LENGTH_BYTES);
+        int scrypt = scryptCost;
+        byte kdfId = scrypt != 0 ? Envelope.KDF_SCRYPT : Envelope.KDF_PBKDF2_HMAC_SHA256;
+        int cost = scrypt != 0 ? scrypt : iterations;
+
+        int tableEnd = RECIPIENTS_HEADER_BYTES + count * RECIPIENT_BYTES;
+        byte[] output = new byte[tableEnd + IV_LENGTH_BYTES + plaintext.length + TAG_LENGTH_BYTES];
+        ByteBuffer out = ByteBuffer.wrap(output);
+        out.put(Envelope.MAGIC).put(RECIPIENTS_VERSION).put(kdfId).putInt(cost).put(salt).put((byte) count);
+
+        byte[] dataKey = new byte[KEY_LENGTH_BITS / 8];
+        Nonces.fill(dataKey);
+        try {
+            Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+            for (char[] password : passwords) {
+                byte[] key = deriveKey(password, salt, kdfId, cost);
+                try {
+                    byte[] iv = Nonces.nonce(IV_LENGTH_BYTES);
+                    out.put(iv);
+                    cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"),
+                            new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+                    cipher.updateAAD(output, 0, RECIPIENTS_HEADER_BYTES);
+                    out.position(out.position() + cipher.doFinal(dataKey, 0, dataKey.length,
+                            output, out.position()));
+                } finally {
+                    java.util.Arrays.fill(key, (byte) 0);
+                }
+            }
+
+            byte[] iv = Nonces.nonce(IV_LENGTH_BYTES);
+            out.put(iv);
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(dataKey, "AES"),
+                    new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            cipher.updateAAD(output, 0, tableEnd);
+            cipher.doFinal(plaintext, 0, plaintext.length, output, out.position());
+            return output;
+
+        } finally {
+            java.util.Arrays.fill(dataKey, (byte) 0);
+            wipe(passwords);
+        }
+    }
+
+    private static boolean isRecipients(ByteBuffer input) {
+        return input.remaining() >= 2
+                && input.get(input.position()) == Envelope.MAGIC
+                && input.get(input.position() + 1) == RECIPIENTS_VERSION;
+    }
+
+    /*
+     * Ключ из пароля выводится один раз (соль общая); обёртки ключа данных пробуются по очереди,
+     * и только подошедшая расшифровывает сам текст.
+     */
+    private static byte[] decryptRecipients(char[] password, ByteBuffer in, Kdf.Progress progress)
+            throws GeneralSecurityException {
+
+        int start = in.position();
+        byte kdfId;
+        int cost;
+        int count;
+        byte[] salt = new byte[SALT_LENGTH_BYTES];
+        try {
+            if (in.remaining() < RECIPIENTS_HEADER_BYTES) {
+                throw new IllegalArgumentException("Invalid input format or version");
+            }
+            in.position(start + 2);
+            kdfId = in.get();
+            cost = in.getInt();
+            in.get(salt);
+            count = in.get() & 0xFF;
+            if (count < 1 || in.remaining() < count * RECIPIENT_BYTES + IV_LENGTH_BYTES + TAG_LENGTH_BYTES) {
+                throw new IllegalArgumentException("Invalid recipient table");
+            }
+            checkKdf(kdfId, cost);
+        } catch (IllegalArgumentException error) {
+            java.util.Arrays.fill(password, '\0');
+            throw error;
+        }
+
+        ByteBuffer header = in.duplicate();
+        header.position(start).limit(start + RECIPIENTS_HEADER_BYTES);
+        byte[] key = null;
+        byte[] dataKey = null;
+        try {
+            key = deriveKey(password, salt, kdfId, cost, progress);
+            SecretKey secretKey = new SecretKeySpec(key, "AES");
+            Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+            byte[] iv = new byte[IV_LENGTH_BYTES];
+            byte[] wrapped = new byte[KEY_LENGTH_BITS / 8 + TAG_LENGTH_BYTES];
+            for (int i = 0; i < count && dataKey == null; i++) {
+                in.get(iv).get(wrapped);
+                cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+                cipher.updateAAD(header.duplicate());
+                try {
+                    dataKey = cipher.doFinal(wrapped);
+                } catch (AEADBadTagException notThisRecipient) {
+                    // Обёртка для другого пароля.
+                }
+            }
+            if (dataKey == null) {
+                throw new AEADBadTagException("No recipient matches the password");
+            }
+
+            ByteBuffer table = in.duplicate();
+            table.position(start).limit(start + RECIPIENTS_HEADER_BYTES + count * RECIPIENT_BYTES);
+            in.position(table.limit());
+            in.get(iv);
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(dataKey, "AES"),
+                    new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            cipher.updateAAD(table);
+
+            byte[] output = new byte[cipher.getOutputSize(in.remaining())];
+            int written = cipher.doFinal(in, ByteBuffer.wrap(output));
+            if (written != output.length) {
+                byte[] exact = java.util.Arrays.copyOf(output, written);
+                java.util.Arrays.fill(output, (byte) 0);
+                output = exact;
+            }
+            return output;
+
+        } finally {
+            if (key != null) java.util.Arrays.fill(key, (byte) 0);
+            if (dataKey != null) java.util.Arrays.fill(dataKey, (byte) 0);
+            java.util.Arrays.fill(password, '\0');
+        }
+    }
+
+    private static void wipe(List<char[]> passwords) {
+        for (char[] password : passwords) {
+            if (password != null) java.util.Arrays.fill(password, '\0');
+        }
+    }
+
+    // === Старый формат v1: "v1:<b64 salt>:<b64 iv>:<b64 ct>" (только расшифровка) ===
+    private static String decryptV1(char[] password, String input, Kdf.Progress progress)
+            throws GeneralSecurityException {
+
+        String[] parts = input.split(":", 4);
+        if (parts.length != 4 || !parts[0].equals(FORMAT_VERSION)) {
+            throw new IllegalArgumentException("Invalid input format or version");
+        }
+
+        byte[] salt = Armor.decode(parts[1]);
+        byte[] iv = Armor.decode(parts[2]);
+        byte[] ciphertext = Armor.decode(parts[3]);
+
+        if (salt.length != SALT_LENGTH_BYTES || iv.length != IV_LENGTH_BYTES) {
+            throw new IllegalArgumentException("Invalid salt or IV length");
+        }
+
+        byte[] key = null;
+        try {
+            key = deriveKey(password, salt, PBKDF2_ITERATIONS, progress);
+            SecretKey secretKey = new SecretKeySpec(key, "AES");
+
+            Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+            GCMParameterSpec spec = new GCMParameterSpec(TAG_LENGTH_BITS, iv);
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, spec);
+
+            cipher.updateAAD(FORMAT_VERSION.getBytes(StandardCharsets.UTF_8));
+            cipher.updateAAD(salt);
+            cipher.updateAAD(iv);
+
+            byte[] plainBytes = cipher.doFinal(ciphertext);
+            return new String(plainBytes, StandardCharsets.UTF_8);
+
+        } finally {
+            if (key != null) java.util.Arrays.fill(key, (byte) 0);
+            java.util.Arrays.fill(password, '\0');
+        }
+    }
+
+    // === Потоковое шифрование: постоянный расход памяти для входа любого размера ===
+
+    /**
+     * Шифрует поток сегментами по {@link #STREAM_SEGMENT_BYTES} байт (конструкция STREAM).
+     * Каждый сегмент аутентифицируется отдельно, его номер и признак последнего сегмента
+     * входят в nonce, поэтому перестановка, удаление и обрезка сегментов обнаруживаются.
+     * Вывод начинается, как только прочитан второй сегмент входа. Потоки не закрываются.
+     */
+    public static void encryptStream(InputStream in, OutputStream out, char[] password)
+            throws IOException, GeneralSecurityException {
+
+        if (password == null || in == null || out == null) {
+            throw new IllegalArgumentException("Password and streams must be non-null");
+        }
+
+        byte[] salt = Nonces.salt(SALT_LENGTH_BYTES);
+        byte[] noncePrefix = Nonces.salt(STREAM_NONCE_PREFIX_BYTES);
+
+        int count = iterations;
+        byte[] header = streamHeader(count, salt, noncePrefix);
+
+        byte[] key = null;
+        try {
+            key = deriveKey(password, salt, count);
+            SecretKey secretKey = new SecretKeySpec(key, "AES");
+            Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+
+            out.write(header);
+
+            // Чтение с опережением на один сегмент: иначе не узнать, какой сегмент последний.
+            byte[] current = new byte[STREAM_SEGMENT_BYTES];
+            byte[] next = new byte[STREAM_SEGMENT_BYTES];
+            byte[] output = new byte[STREAM_SEGMENT_BYTES + TAG_LENGTH_BYTES];
+
+            int currentLength = readFully(in, current);
+            int counter = 0;
+            while (true) {
+                int nextLength = currentLength == current.length ? readFully(in, next) : 0;
+                boolean last = nextLength == 0;
+
+                cipher.init(Cipher.ENCRYPT_MODE, secretKey,
+                        new GCMParameterSpec(TAG_LENGTH_BITS, streamNonce(noncePrefix, counter, last)));
+                cipher.updateAAD(header);
+                int written = cipher.doFinal(current, 0, currentLength, output, 0);
+                out.write(output, 0, written);
+
+                if (last) {
+                    break;
+                }
+                counter = nextCounter(counter);
+
+                byte[] swap = current;
+                current = next;
+                next = swap;
+                currentLength = nextLength;
+            }
+
+            java.util.Arrays.fill(current, (byte) 0);
+            java.util.Arrays.fill(next, (byte) 0);
+            out.flush();
+
+        } finally {
+            if (key != null) java.util.Arrays.fill(key, (byte) 0);
+            java.util.Arrays.fill(password, '\0');
+        }
+    }
+
+    /**
+     * Расшифровывает поток, созданный {@link #encryptStream}. Каждый сегмент проверяется
+     * до записи в выходной поток, так что непроверенный открытый текст наружу не попадает.
+     * Если поток обрезан или изменён, бросается {@link AEADBadTagException}; уже записанные
+     * сегменты при этом подлинные, но неполные — вызывающий код должен отбросить вывод.
+     */
+    public static void decryptStream(InputStream in, OutputStream out, char[] password)
+            throws IOException, GeneralSecurityException {
+
+        if (password == null || in == null || out == null) {
+            throw new IllegalArgumentException("Password and streams must be non-null");
+        }
+
+        byte[] header = new byte[STREAM_VERSION_BYTES];
+        int headerLength = readFully(in, header) == header.length ? streamHeaderLength(header) : -1;
+        if (headerLength > 0) {
+            header = java.util.Arrays.copyOf(header, headerLength);
+            if (readFully(in, header, STREAM_VERSION_BYTES) != headerLength - STREAM_VERSION_BYTES) {
+                headerLength = -1;
+            }
+        }
+        if (headerLength < 0) {
+            java.util.Arrays.fill(password, '\0');
+            throw new IllegalArgumentException("Invalid input format or version");
+        }
+        byte[] salt = new byte[SALT_LENGTH_BYTES];
+        byte[] noncePrefix = new byte[STREAM_NONCE_PREFIX_BYTES];
+        int count = parseStreamHeader(header, salt, noncePrefix);
+
+        byte[] key = null;
+        try {
+            key = deriveKey(password, salt, count);
+            SecretKey secretKey = new SecretKeySpec(key, "AES");
+            Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+
+            byte[] current = new byte[STREAM_SEGMENT_BYTES + TAG_LENGTH_BYTES];
+            byte[] next = new byte[STREAM_SEGMENT_BYTES + TAG_LENGTH_BYTES];
+            byte[] output = new byte[STREAM_SEGMENT_BYTES];
+
+            int currentLength = readFully(in, current);
+            int counter = 0;
+            while (true) {
+                int nextLength = currentLength == current.length ? readFully(in, next) : 0;
+                boolean last = nextLength == 0;
+
+                if (currentLength < TAG_LENGTH_BYTES) {
+                    throw new AEADBadTagException("Truncated stream segment");
+                }
+
+                cipher.init(Cipher.DECRYPT_MODE, secretKey,
+                        new GCMParameterSpec(TAG_LENGTH_BITS, streamNonce(noncePrefix, counter, last)));
+                cipher.updateAAD(header);
+                int written = cipher.doFinal(current, 0, currentLength, output, 0);
+                out.write(output, 0, written);
+
+                if (last) {
+                    break;
+                }
+                counter = nextCounter(counter);
+
+                byte[] swap = current;
+                current = next;
+                next = swap;
+                currentLength = nextLength;
+            }
+
+            java.util.Arrays.fill(output, (byte) 0);
+            out.flush();
+
+        } finally {
+            if (key != null) java.util.Arrays.fill(key, (byte) 0);
+            java.util.Arrays.fill(password, '\0');
+        }
+    }
+
+    static byte[] streamHeader(int count, byte[] salt, byte[] noncePrefix) {
+        ByteBuffer header = ByteBuffer.allocate(STREAM_HEADER_BYTES);
+        header.put(STREAM_FORMAT_VERSION.getBytes(StandardCharsets.UTF_8));
+        header.putInt(count);
+        header.put(salt, 0, SALT_LENGTH_BYTES);
+        header.put(noncePrefix, 0, STREAM_NONCE_PREFIX_BYTES);
+        return header.array();
+    }
+
+    /*
+     * Длина заголовка по первым {@link #STREAM_VERSION_BYTES} байтам или -1, если версия неизвестна.
+     */
+    static int streamHeaderLength(byte[] header) {
+        if (header.length < STREAM_VERSION_BYTES) {
+            return -1;
+        }
+        if (isVersion(header, STREAM_FORMAT_VERSION)) {
+            return STREAM_HEADER_BYTES;
+        }
+        if (isVersion(header, STREAM_V1_FORMAT_VERSION)) {
+            return STREAM_V1_HEADER_BYTES;
+        }
+        return -1;
+    }
+
+    /*
+     * Разбирает заголовок "s2" или "s1" (длина массива — ровно длина заголовка).
+     * @return число итераций PBKDF2
+     */
+    static int parseStreamHeader(byte[] header, byte[] salt, byte[] noncePrefix) {
+        if (header.length != streamHeaderLength(header)) {
+            throw new IllegalArgumentException("Invalid input format or version");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(header, STREAM_VERSION_BYTES,
+                header.length - STREAM_VERSION_BYTES);
+        int count = PBKDF2_ITERATIONS;
+        if (header.length == STREAM_HEADER_BYTES) {
+            count = buffer.getInt();
+            if (count < MIN_ITERATIONS || count > MAX_ITERATIONS) {
+                throw new IllegalArgumentException("Invalid iteration count");
+            }
+        }
+        buffer.get(salt, 0, SALT_LENGTH_BYTES);
+        buffer.get(noncePrefix, 0, STREAM_NONCE_PREFIX_BYTES);
+        return count;
+    }
+
+    private static boolean isVersion(byte[] header, String version) {
+        return header[0] == version.charAt(0) && header[1] == version.charAt(1);
+    }
+
+    static byte[] streamNonce(byte[] noncePrefix, int counter, boolean last) {
+        byte[] nonce = new byte[IV_LENGTH_BYTES];
+        System.arraycopy(noncePrefix, 0, nonce, 0, STREAM_NONCE_PREFIX_BYTES);
+        nonce[7] = (byte) (counter >>> 24);
+        nonce[8] = (byte) (counter >>> 16);
+        nonce[9] = (byte) (counter >>> 8);
+        nonce[10] = (byte) counter;
+        nonce[11] = (byte) (last ? 1 : 0);
+        return nonce;
+    }
+
+    static int nextCounter(int counter) {
+        if (counter == -1) {
+            // 2^32 сегментов — больше nonce не различить.
+            throw new IllegalStateException("Stream too long");
+        }
+        return counter + 1;
+    }
+
+    /*
+     * Читает до заполнения буфера или до конца потока. Возвращает число прочитанных байт.
+     */
+    static int readFully(InputStream in, byte[] buffer) throws IOException {
+        return readFully(in, buffer, 0);
+    }
+
+    static int readFully(InputStream in, byte[] buffer, int offset) throws IOException {
+        int total = 0;
+        while (offset + total < buffer.length) {
+            int read = in.read(buffer, offset + total, buffer.length - offset - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    static byte[] deriveKey(char[] password, byte[] salt, int iterations)
+            throws GeneralSecurityException {
+        return deriveKey(password, salt, iterations, null);
+    }
+
+    /**
+     * PBKDF2-HMAC-SHA256 ({@link Pbkdf2}); без progress вычисление прерывается по interrupt().
+     */
+    static byte[] deriveKey(final char[] password, final byte[] salt, final int iterations,
+                            final Kdf.Progress progress)
+            throws GeneralSecurityException {
+        return KEY_CACHE.get(password, salt, Envelope.KDF_PBKDF2_HMAC_SHA256, iterations,
+                new KeyCache.Derivation() {
+                    @Override
+                    public byte[] derive() throws GeneralSecurityException {
+                        return PBKDF2.derive(password, salt, iterations, KEY_LENGTH_BITS / 8, progress);
+                    }
+                });
+    }
+
+    /**
+     * Ключ по KDF из заголовка контейнера v2: {@link Envelope#KDF_PBKDF2_HMAC_SHA256}
+     * или {@link Envelope#KDF_SCRYPT}.
+     */
+    static byte[] deriveKey(char[] password, byte[] salt, byte kdfId, int cost)
+            throws GeneralSecurityException {
+        return deriveKey(password, salt, kdfId, cost, null);
+    }
+
+    /**
+     * То же с ходом и отменой; при попадании в {@link KeyCache} ход не публикуется.
+     */
+    static byte[] deriveKey(final char[] password, final byte[] salt, byte kdfId, final int cost,
+                            final Kdf.Progress progress)
+            throws GeneralSecurityException {
+        final Kdf kdf = kdfId == Envelope.KDF_SCRYPT ? SCRYPT : PBKDF2;
+        return KEY_CACHE.get(password, salt, kdfId, cost, new KeyCache.Derivation() {
+            @Override
+            public byte[] derive() throws GeneralSecurityException {
+                return kdf.derive(password, salt, cost, KEY_LENGTH_BITS / 8, progress);
+            }
+        });
+    }
+}
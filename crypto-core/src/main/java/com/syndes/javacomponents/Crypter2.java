@@ -0,0 +1,445 @@
+package com.syndes.javacomponents;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.LinkedHashSet;
+
+/**
+ * Crypter2 — простая обфускация: заменяет печатные ASCII (32..126) на заранее заданные
+ * кандзи (95 символов). Обратимая операция.
+ *
+ * Поддерживает интерфейс:
+ *   String encrypt(String key, String input)
+ *   String decrypt(String key, String input)
+ *
+ * Параметр key не используется (оставлен для совместимости с Crypter).
+ *
+ * Для потокового преобразования есть encodingWriter(Writer) и decodingReader(Reader).
+ *
+ * Плотный режим (encodeBytes/decodeBytes) кодирует произвольные байты напрямую,
+ * по 14 бит на иероглиф из блока CJK Unified Ideographs (U+4E00..U+8DFF), без Base64.
+ * Первый символ — маркер из CJK Extension A (U+3400..U+3406), он же хранит длину по модулю 7;
+ * среди 95 кандзи обычного режима таких символов нет, поэтому режимы различимы (isDense).
+ * Преобразование идёт по таблицам char[] без выделения памяти на каждый символ.
+ *
+ * Бросает IllegalArgumentException при обнаружении неподдерживаемых символов.
+ */
+public final class Crypter2 {
+
+    private Crypter2() { /* static only */ }
+
+    // 95 кандзи, соответствуют ASCII 32..126 (space .. ~)
+    private static final String[] KANJI = {
+            "日","本","人","大","小","中","山","川","田","目",
+            "耳","口","手","足","力","水","火","土","風","空",
+            "海","天","心","愛","学","校","言","語","文","書",
+            "話","行","来","見","食","飲","車","電","駅","家",
+            "男","女","子","年","時","分","秒","新","古","長",
+            "短","高","低","明","暗","赤","青","白","黒","金",
+            "銀","銅","王","魚","鳥","犬","猫","虫","花","草",
+            "林","森","石","走","立","座","起","泳","歩","歌",
+            "泣","笑","喜","怒","怖","旅","宿","室","庭","店",
+            "村","町","都","市","県"
+    };
+
+    private static final char FIRST_ASCII = 32;  // space
+
+    // Прямая таблица: индекс — код ASCII, значение — кандзи (0 — символ не поддерживается).
+    private static final char[] ASCII_TO_KANJI = new char[128];
+
+    // Обратная таблица — совершенная хеш-функция kanji % REVERSE_MODULUS без коллизий
+    // для всех 95 кандзи. REVERSE_KANJI хранит сам кандзи, чтобы отличить чужие символы.
+    private static final int REVERSE_MODULUS;
+    private static final char[] REVERSE_KANJI;
+    private static final char[] REVERSE_ASCII;
+
+    static {
+        char ascii = FIRST_ASCII;
+        for (int i = 0; i < KANJI.length; i++, ascii++) {
+            ASCII_TO_KANJI[ascii] = KANJI[i].charAt(0);
+        }
+
+        int modulus = KANJI.length;
+        while (!isCollisionFree(modulus)) {
+            modulus++;
+        }
+        REVERSE_MODULUS = modulus;
+        REVERSE_KANJI = new char[modulus];
+        REVERSE_ASCII = new char[modulus];
+        ascii = FIRST_ASCII;
+        for (int i = 0; i < KANJI.length; i++, ascii++) {
+            char kanji = KANJI[i].charAt(0);
+            REVERSE_KANJI[kanji % modulus] = kanji;
+            REVERSE_ASCII[kanji % modulus] = ascii;
+        }
+        // Пустая ячейка не должна совпасть ни с каким входом: 0 совпал бы с '\u0000'.
+        // Символ slot + 1 попадает в другую ячейку, поэтому в этой не встретится.
+        for (int slot = 0; slot < modulus; slot++) {
+            if (REVERSE_KANJI[slot] == 0) {
+                REVERSE_KANJI[slot] = (char) (slot + 1);
+            }
+        }
+    }
+
+    // === Плотный режим: 14 бит на иероглиф ===
+    private static final int DENSE_BITS         = 14;
+    private static final int DENSE_MASK         = (1 << DENSE_BITS) - 1;
+    private static final char DENSE_BASE        = '\u4E00';
+    private static final char DENSE_MARKER_BASE = '\u3400';
+    // 7 байт = 56 бит = ровно 4 иероглифа; остаток длины по модулю 7 снимает неоднозначность.
+    private static final int DENSE_LENGTH_MODULUS = 7;
+
+    private static boolean isCollisionFree(int modulus) {
+        boolean[] used = new boolean[modulus];
+        for (String kanji : KANJI) {
+            int slot = kanji.charAt(0) % modulus;
+            if (used[slot]) {
+                return false;
+            }
+            used[slot] = true;
+        }
+        return true;
+    }
+
+    /**
+     * Зашифровать / запаковать строку, заменяя поддерживаемые ASCII символы на кандзи.
+     * @param key параметр для совместимости (не используется)
+     * @param input входящая строка (ожидаются символы с кодами 32..126)
+     * @return строка, содержащая кандзи
+     * @throws IllegalArgumentException если найдены неподдерживаемые символы
+     */
+    public static String encrypt(String key, String input) {
+        if (input == null || input.isEmpty()) return input == null ? null : "";
+
+        // Каждый символ ASCII превращается ровно в один кандзи (один UTF-16 code unit),
+        // поэтому преобразуем на месте в массиве точного размера.
+        char[] buffer = new char[input.length()];
+        input.getChars(0, buffer.length, buffer, 0);
+
+        if (encode(buffer, 0, buffer.length) >= 0) {
+            throw unsupportedCharacters(input);
+        }
+        return new String(buffer);
+    }
+
+    /**
+     * Расшифровать / распаковать строку с кандзи обратно в ASCII.
+     * @param key параметр для совместимости (не используется)
+     * @param input входящая строка, содержащая кандзи
+     * @return восстановленная ASCII-строка
+     * @throws IllegalArgumentException если найдены неподдерживаемые иероглифы
+     */
+    public static String decrypt(String key, String input) {
+        if (input == null || input.isEmpty()) return input == null ? null : "";
+
+        char[] buffer = new char[input.length()];
+        input.getChars(0, buffer.length, buffer, 0);
+
+        if (decode(buffer, 0, buffer.length) >= 0) {
+            throw unsupportedKanji(input);
+        }
+        return new String(buffer);
+    }
+
+    /**
+     * Возвращает Writer, который пишет в out кандзи вместо ASCII — потоковый аналог encrypt.
+     * Неподдерживаемый символ приводит к IllegalArgumentException, как и в encrypt.
+     */
+    public static Writer encodingWriter(Writer out) {
+        return new EncodingWriter(out);
+    }
+
+    /**
+     * Возвращает Reader, который читает из in кандзи и отдаёт ASCII — потоковый аналог decrypt.
+     * Неподдерживаемый иероглиф приводит к IllegalArgumentException, как и в decrypt.
+     */
+    public static Reader decodingReader(Reader in) {
+        return new DecodingReader(in);
+    }
+
+    /**
+     * Плотный режим: кодирует байты (например, бинарный контейнер Crypter) в иероглифы,
+     * 14 бит на символ, без промежуточного Base64.
+     */
+    public static String encodeBytes(byte[] data) {
+        return encodeBytes(data, 0, data.length);
+    }
+
+    public static String encodeBytes(byte[] data, int offset, int length) {
+        return new String(encodeBytesToChars(data, offset, length));
+    }
+
+    static char[] encodeBytesToChars(byte[] data, int offset, int length) {
+        char[] out = new char[denseLength(length)];
+        out[0] = (char) (DENSE_MARKER_BASE + length % DENSE_LENGTH_MODULUS);
+
+        int pos = 1;
+        int acc = 0;
+        int bits = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            acc = (acc << 8) | (data[i] & 0xFF);
+            bits += 8;
+            if (bits >= DENSE_BITS) {
+                bits -= DENSE_BITS;
+                out[pos++] = (char) (DENSE_BASE + ((acc >>> bits) & DENSE_MASK));
+                acc &= (1 << bits) - 1;
+            }
+        }
+        if (bits > 0) {
+            out[pos] = (char) (DENSE_BASE + ((acc << (DENSE_BITS - bits)) & DENSE_MASK));
+        }
+        return out;
+    }
+
+    /**
+     * Длина в символах (с маркером) плотной записи length байт.
+     */
+    static int denseLength(int length) {
+        return 1 + (int) (((long) length * 8 + DENSE_BITS - 1) / DENSE_BITS);
+    }
+
+    /**
+     * Плотный режим: обратное преобразование {@link #encodeBytes}.
+     * @throws IllegalArgumentException если строка не является плотной записью
+     */
+    public static byte[] decodeBytes(CharSequence input) {
+        int length = denseDecodedLength(input);
+        byte[] out = new byte[length];
+        decodeBytesInto(input, out, 0);
+        return out;
+    }
+
+    /**
+     * Число байт, закодированных в плотной записи.
+     * @throws IllegalArgumentException если строка не является плотной записью
+     */
+    static int denseDecodedLength(CharSequence input) {
+        if (!isDense(input)) {
+            throw new IllegalArgumentException("Crypter2.decodeBytes: это не плотная запись");
+        }
+        int units = input.length() - 1;
+        int remainder = input.charAt(0) - DENSE_MARKER_BASE;
+
+        // Длине units соответствуют не более двух соседних длин в байтах.
+        int candidate = (int) ((long) units * DENSE_BITS / 8);
+        for (int length = candidate; length >= Math.max(0, candidate - 1); length--) {
+            if (length % DENSE_LENGTH_MODULUS == remainder && denseLength(length) == units + 1) {
+                return length;
+            }
+        }
+        throw new IllegalArgumentException("Crypter2.decodeBytes: повреждённая длина");
+    }
+
+    static void decodeBytesInto(CharSequence input, byte[] out, int offset) {
+        int length = denseDecodedLength(input);
+        int pos = offset;
+        int end = offset + length;
+        int acc = 0;
+        int bits = 0;
+        for (int i = 1, n = input.length(); i < n; i++) {
+            int value = input.charAt(i) - DENSE_BASE;
+            if (value < 0 || value > DENSE_MASK) {
+                throw new IllegalArgumentException(
+                        "Crypter2.decodeBytes: обнаружены неподдерживаемые иероглифы: " + input.charAt(i));
+            }
+            acc = (acc << DENSE_BITS) | value;
+            bits += DENSE_BITS;
+            while (bits >= 8 && pos < end) {
+                bits -= 8;
+                out[pos++] = (byte) (acc >>> bits);
+            }
+            acc &= (1 << bits) - 1;
+        }
+    }
+
+    /**
+     * Определяет плотную запись по символу-маркеру.
+     */
+    public static boolean isDense(CharSequence input) {
+        if (input == null || input.length() == 0) {
+            return false;
+        }
+        char marker = input.charAt(0);
+        return marker >= DENSE_MARKER_BASE && marker < DENSE_MARKER_BASE + DENSE_LENGTH_MODULUS;
+    }
+
+    /**
+     * Возвращает readonly-отображение ASCII->канзи (для отладки).
+     */
+    public static Map<Character, String> getCharToKanjiMap() {
+        return DebugMaps.CHAR_TO_KANJI;
+    }
+
+    /**
+     * Возвращает readonly-отображение канзи->ASCII (для отладки).
+     */
+    public static Map<String, Character> getKanjiToCharMap() {
+        return DebugMaps.KANJI_TO_CHAR;
+    }
+
+    /*
+     * Заменяет ASCII на кандзи на месте. Возвращает индекс первого неподдерживаемого
+     * символа или -1.
+     */
+    private static int encode(char[] buffer, int offset, int length) {
+        char[] table = ASCII_TO_KANJI;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            char c = buffer[i];
+            char mapped = c < table.length ? table[c] : 0;
+            if (mapped == 0) {
+                return i;
+            }
+            buffer[i] = mapped;
+        }
+        return -1;
+    }
+
+    /*
+     * Заменяет кандзи на ASCII на месте. Возвращает индекс первого неподдерживаемого
+     * иероглифа или -1.
+     */
+    private static int decode(char[] buffer, int offset, int length) {
+        char[] kanji = REVERSE_KANJI;
+        char[] ascii = REVERSE_ASCII;
+        int modulus = REVERSE_MODULUS;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            char c = buffer[i];
+            int slot = c % modulus;
+            if (kanji[slot] != c) {
+                return i;
+            }
+            buffer[i] = ascii[slot];
+        }
+        return -1;
+    }
+
+    // Медленный путь — только для сообщения об ошибке.
+    private static IllegalArgumentException unsupportedCharacters(CharSequence input) {
+        Set<Character> unsupported = new LinkedHashSet<>();
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c >= ASCII_TO_KANJI.length || ASCII_TO_KANJI[c] == 0) {
+                unsupported.add(c);
+            }
+        }
+
+        // Ограничиваем вывод списка символов (во избежание слишком длинных сообщений)
+        StringBuilder sample = new StringBuilder();
+        int count = 0;
+        for (Character uc : unsupported) {
+            if (count++ > 20) { sample.append("…"); break; }
+            if (sample.length() > 0) sample.append(' ');
+            sample.append(uc);
+        }
+        return new IllegalArgumentException("Crypter2.encrypt: обнаружены неподдерживаемые символы: " + sample.toString());
+    }
+
+    private static IllegalArgumentException unsupportedKanji(CharSequence input) {
+        Set<String> unsupported = new LinkedHashSet<>();
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (REVERSE_KANJI[c % REVERSE_MODULUS] != c) {
+                unsupported.add(String.valueOf(c));
+            }
+        }
+
+        StringBuilder sample = new StringBuilder();
+        int count = 0;
+        for (String uc : unsupported) {
+            if (count++ > 20) { sample.append("…"); break; }
+            if (sample.length() > 0) sample.append(' ');
+            sample.append(uc);
+        }
+        return new IllegalArgumentException("Crypter2.decrypt: обнаружены неподдерживаемые иероглифы: " + sample.toString());
+    }
+
+    private static final class EncodingWriter extends Writer {
+        private final Writer out;
+        private final char[] buffer = new char[4096];
+
+        EncodingWriter(Writer out) {
+            super(out);
+            this.out = out;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            while (len > 0) {
+                int chunk = Math.min(len, buffer.length);
+                System.arraycopy(cbuf, off, buffer, 0, chunk);
+                if (encode(buffer, 0, chunk) >= 0) {
+                    throw unsupportedCharacters(java.nio.CharBuffer.wrap(cbuf, off, chunk));
+                }
+                out.write(buffer, 0, chunk);
+                off += chunk;
+                len -= chunk;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static final class DecodingReader extends Reader {
+        private final Reader in;
+
+        DecodingReader(Reader in) {
+            super(in);
+            this.in = in;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int read = in.read(cbuf, off, len);
+            if (read > 0) {
+                int bad = decode(cbuf, off, read);
+                if (bad >= 0) {
+                    // Начало буфера уже преобразовано, поэтому сообщаем только о первом
+                    // неподдерживаемом иероглифе.
+                    throw unsupportedKanji(java.nio.CharBuffer.wrap(cbuf, bad, 1));
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // Отладочные отображения строятся только при первом обращении.
+    private static final class DebugMaps {
+        static final Map<Character, String> CHAR_TO_KANJI;
+        static final Map<String, Character> KANJI_TO_CHAR;
+
+        static {
+            Map<Character, String> forward = new LinkedHashMap<>(95);
+            Map<String, Character> backward = new HashMap<>(95);
+
+            int ascii = FIRST_ASCII;
+            for (int i = 0; i < KANJI.length; i++, ascii++) {
+                char ch = (char) ascii;
+                String kanji = KANJI[i];
+                forward.put(ch, kanji);
+                backward.put(kanji, ch);
+            }
+
+            CHAR_TO_KANJI = Collections.unmodifiableMap(forward);
+            KANJI_TO_CHAR = Collections.unmodifiableMap(backward);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.syndes.javacomponents;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+/**
+ * CryptoPipeline — каскад Crypter → Crypter2 за один проход с ограниченным пиком памяти.
+ *
+ * Шифрование: текст кодируется в UTF-8 прямо в рабочий буфер за место заголовка,
+ * шифруется на месте в контейнер v2 и сразу кодируется в иероглифы плотного режима.
+ * Расшифровка — в обратном порядке в том же буфере. Между вызовами буфер
+ * переиспользуется (и затирается нулями), так что кроме входной и выходной строк
+ * живёт одна копия данных — вместо 6–8 копий прежнего каскада.
+ *
+ * Экземпляр не потокобезопасен для одновременных вызовов — методы синхронизированы.
+ */
+public final class CryptoPipeline {
+
+    // Буферы больше этого не держим между вызовами, чтобы не занимать память впустую.
+    private static final int RETAINED_BUFFER_BYTES = 1024 * 1024;
+
+    private byte[] work = new byte[0];
+
+    /**
+     * Шифрует текст в плотную запись Crypter2 контейнера v2.
+     */
+    public String encrypt(char[] password, String plaintext) throws GeneralSecurityException {
+        return encrypt(password, plaintext, null);
+    }
+
+    /**
+     * То же с ходом и отменой вывода ключа — основной части работы.
+     * @param progress может быть null
+     * @throws java.util.concurrent.CancellationException если вычисление отменено
+     */
+    public synchronized String encrypt(char[] password, String plaintext, Kdf.Progress progress)
+            throws GeneralSecurityException {
+
+        if (password == null || plaintext == null || plaintext.isEmpty()) {
+            throw new IllegalArgumentException("Password and plaintext must be non-null and non-empty");
+        }
+
+        int plainLength = utf8Length(plaintext);
+        byte[] buffer = workBuffer(Envelope.HEADER_BYTES + plainLength + Crypter.TAG_LENGTH_BYTES);
+        try {
+            encodeUtf8(plaintext, buffer, Envelope.HEADER_BYTES, plainLength);
+            int envelopeLength = Crypter.encryptEnvelopeInPlace(password, buffer, plainLength, progress);
+            return Crypter2.encodeBytes(buffer, 0, envelopeLength);
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Расшифровывает любой поддерживаемый формат: плотную запись Crypter2 — в одном буфере,
+     * прочие (v1, Base64 контейнера v2, 95 кандзи) — прежним путём через Crypter.
+     */
+    public String decrypt(char[] password, String input) throws GeneralSecurityException {
+        return decrypt(password, input, null);
+    }
+
+    /**
+     * То же с ходом и отменой вывода ключа.
+     * @param progress может быть null
+     * @throws java.util.concurrent.CancellationException если вычисление отменено
+     */
+    public synchronized String decrypt(char[] password, String input, Kdf.Progress progress)
+            throws GeneralSecurityException {
+
+        if (password == null || input == null) {
+            throw new IllegalArgumentException("Password and input must be non-null");
+        }
+
+        if (!Crypter2.isDense(input)) {
+            if (!input.isEmpty() && input.charAt(0) < 0x80) {
+                return Crypter.decrypt(password, input, progress);
+            }
+            return Crypter.decrypt(password, Crypter2.decrypt(null, input), progress);
+        }
+
+        int envelopeLength = Crypter2.denseDecodedLength(input);
+        byte[] buffer = workBuffer(envelopeLength);
+        try {
+            Crypter2.decodeBytesInto(input, buffer, 0);
+            int plainLength = Crypter.decryptEnvelopeInPlace(password, buffer, envelopeLength, progress);
+            return new String(buffer, Envelope.HEADER_BYTES, plainLength, StandardCharsets.UTF_8);
+        } finally {
+            release(buffer);
+        }
+    }
+
+    private byte[] workBuffer(int length) {
+        if (work.length < length) {
+            work = new byte[length];
+        }
+        return work;
+    }
+
+    private void release(byte[] buffer) {
+        java.util.Arrays.fill(buffer, (byte) 0);
+        if (buffer.length > RETAINED_BUFFER_BYTES) {
+            work = new byte[0];
+        }
+    }
+
+    /*
+     * Длина строки в UTF-8 без кодирования. Одиночные суррогаты считаются как '?',
+     * т.е. так же, как их заменяет String.getBytes.
+     */
+    static int utf8Length(CharSequence text) {
+        int length = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static void encodeUtf8(String text, byte[] buffer, int offset, int length) {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .replaceWith(new byte[]{'?'});
+        ByteBuffer out = ByteBuffer.wrap(buffer, offset, length);
+        CoderResult result = encoder.encode(CharBuffer.wrap(text), out, true);
+        if (!result.isUnderflow() || encoder.flush(out).isOverflow() || out.hasRemaining()) {
+            throw new IllegalStateException("UTF-8 length mismatch");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.syndes.javacomponents;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * CryptoWarmup — прогрев перед первой операцией пользователя.
+ *
+ * Первое шифрование после запуска заметно медленнее последующих: поиск провайдера AES/GCM,
+ * засев SecureRandom, загрузка и статическая инициализация классов (таблицы {@link Crypter2}
+ * и {@link Armor}) и интерпретация горячих циклов до JIT — всё это происходит при первом вызове.
+ * {@link #run()} делает то же заранее, в фоне (например, пока показывается заставка):
+ *  - провайдеры: Cipher AES/GCM с init и doFinal, засев SecureRandom;
+ *  - классы: Crypter, Envelope, Armor, Crypter2 (в том числе плотный режим), Pbkdf2;
+ *  - JIT: несколько коротких прогонов PBKDF2 и AES-GCM по настоящим путям кода.
+ * Секретов не использует и ничего не сохраняет; занимает десятки миллисекунд.
+ */
+public final class CryptoWarmup {
+
+    private CryptoWarmup() { /* static only */ }
+
+    // Достаточно, чтобы цикл PBKDF2 и AES-GCM были скомпилированы, и мало для задержки на старте.
+    private static final int JIT_ROUNDS = 3;
+    private static final int JIT_ITERATIONS = 10000;
+    private static final int JIT_PAYLOAD_BYTES = 4096;
+
+    /**
+     * Длительность этапов прогрева, мс.
+     */
+    public static final class Report {
+        public final long providersMillis;
+        public final long classesMillis;
+        public final long jitMillis;
+
+        Report(long providersMillis, long classesMillis, long jitMillis) {
+            this.providersMillis = providersMillis;
+            this.classesMillis = classesMillis;
+            this.jitMillis = jitMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "providers=" + providersMillis + "ms classes=" + classesMillis
+                    + "ms jit=" + jitMillis + "ms";
+        }
+    }
+
+    /**
+     * Выполняет прогрев в текущем потоке.
+     * @throws GeneralSecurityException если AES/GCM недоступен (тогда не заработает и шифрование)
+     */
+    public static Report run() throws GeneralSecurityException {
+        long start = System.nanoTime();
+
+        byte[] key = new byte[32];
+        byte[] iv = new byte[12];
+        // Засевает общий SecureRandom из Nonces, которым потом пользуется шифрование.
+        Nonces.fill(key);
+        Nonces.fill(iv);
+        byte[] payload = new byte[JIT_PAYLOAD_BYTES];
+        byte[] sealed = gcm(Cipher.ENCRYPT_MODE, key, iv, payload);
+        long providers = System.nanoTime();
+
+        String text = "warm-up " + Armor.encode(sealed, 0, 48);
+        Crypter2.decrypt(null, Crypter2.encrypt(null, text));
+        Crypter2.decodeBytes(Crypter2.encodeBytes(text.getBytes(StandardCharsets.UTF_8)));
+        Armor.decode(Armor.encode(sealed));
+        byte[] header = new byte[Envelope.HEADER_BYTES + Crypter.TAG_LENGTH_BYTES];
+        Envelope.encodeHeader(ByteBuffer.wrap(header), Envelope.KDF_PBKDF2_HMAC_SHA256,
+                Crypter.getIterations(), new byte[Crypter.SALT_LENGTH_BYTES], iv);
+        Envelope.decode(ByteBuffer.wrap(header));
+        long classes = System.nanoTime();
+
+        // Напрямую, мимо кэша ключей Crypter: повторный вывод из кэша ничего бы не прогрел.
+        Pbkdf2 kdf = new Pbkdf2();
+        char[] password = "warm-up".toCharArray();
+        for (int round = 0; round < JIT_ROUNDS; round++) {
+            byte[] derived = kdf.derive(password, iv, JIT_ITERATIONS, 32, null);
+            java.util.Arrays.fill(derived, (byte) 0);
+            gcm(Cipher.DECRYPT_MODE, key, iv, gcm(Cipher.ENCRYPT_MODE, key, iv, payload));
+        }
+        long jit = System.nanoTime();
+
+        java.util.Arrays.fill(key, (byte) 0);
+        return new Report((providers - start) / 1000000, (classes - providers) / 1000000,
+                (jit - classes) / 1000000);
+    }
+
+    private static byte[] gcm(int mode, byte[] key, byte[] iv, byte[] input)
+            throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, new SecretKeySpec(key, "AES"), new GCMParameterSpec(128, iv));
+        return cipher.doFinal(input);
+    }
+}
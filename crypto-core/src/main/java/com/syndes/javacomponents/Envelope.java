@@ -0,0 +1,144 @@
+package com.syndes.javacomponents;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Envelope — компактный бинарный контейнер "v2" для {@link Crypter}.
+ *
+ * Формат (big-endian):
+ *   magic(1) | version(1) | kdf id(1) | iterations(4) | salt(32) | iv(12) | ciphertext+tag
+ *
+ * iterations — параметр стоимости KDF: для PBKDF2 число итераций, для scrypt — упакованные
+ * N, r, p (см. {@link Scrypt#cost}).
+ *
+ * Всё до ciphertext — заголовок; он же целиком идёт в AAD, так что параметры KDF
+ * нельзя подменить незаметно. Разбор не копирует данные: salt, iv и ciphertext
+ * возвращаются как срезы исходного буфера.
+ *
+ * Текстовое представление (Base64 и т.п.) — отдельный, необязательный этап, см. {@link Armor}.
+ */
+public final class Envelope {
+
+    public static final byte MAGIC    = (byte) 0xC5;
+    public static final byte VERSION  = 2;
+
+    public static final byte KDF_PBKDF2_HMAC_SHA256 = 1;
+    public static final byte KDF_SCRYPT             = 2;
+
+    public static final int SALT_LENGTH_BYTES = 32;
+    public static final int IV_LENGTH_BYTES   = 12;
+    public static final int HEADER_BYTES      = 1 + 1 + 1 + 4 + SALT_LENGTH_BYTES + IV_LENGTH_BYTES;
+
+    private final ByteBuffer header;
+    private final byte kdfId;
+    private final int iterations;
+    private final ByteBuffer salt;
+    private final ByteBuffer iv;
+    private final ByteBuffer ciphertext;
+
+    private Envelope(ByteBuffer header, byte kdfId, int iterations,
+                     ByteBuffer salt, ByteBuffer iv, ByteBuffer ciphertext) {
+        this.header = header;
+        this.kdfId = kdfId;
+        this.iterations = iterations;
+        this.salt = salt;
+        this.iv = iv;
+        this.ciphertext = ciphertext;
+    }
+
+    /**
+     * Проверяет по первым байтам, похож ли буфер на контейнер v2. Позиция буфера не меняется.
+     */
+    public static boolean isEnvelope(ByteBuffer input) {
+        return input.remaining() >= HEADER_BYTES
+                && input.get(input.position()) == MAGIC
+                && input.get(input.position() + 1) == VERSION;
+    }
+
+    public static boolean isEnvelope(byte[] input) {
+        return input != null && isEnvelope(ByteBuffer.wrap(input));
+    }
+
+    /**
+     * Разбирает контейнер без копирования. Позиция буфера не меняется.
+     * @throws IllegalArgumentException если формат или версия не те
+     */
+    public static Envelope decode(ByteBuffer input) {
+        if (!isEnvelope(input)) {
+            throw new IllegalArgumentException("Invalid input format or version");
+        }
+
+        ByteBuffer buffer = input.slice().order(ByteOrder.BIG_ENDIAN);
+        byte kdfId = buffer.get(2);
+        int iterations = buffer.getInt(3);
+
+        return new Envelope(
+                slice(buffer, 0, HEADER_BYTES),
+                kdfId,
+                iterations,
+                slice(buffer, 7, SALT_LENGTH_BYTES),
+                slice(buffer, 7 + SALT_LENGTH_BYTES, IV_LENGTH_BYTES),
+                slice(buffer, HEADER_BYTES, buffer.remaining() - HEADER_BYTES));
+    }
+
+    public static Envelope decode(byte[] input) {
+        return decode(ByteBuffer.wrap(input));
+    }
+
+    /**
+     * Записывает заголовок v2 в буфер с текущей позиции; ciphertext дописывается вызывающим кодом.
+     */
+    public static void encodeHeader(ByteBuffer output, byte kdfId, int iterations,
+                                    byte[] salt, byte[] iv) {
+        if (salt.length != SALT_LENGTH_BYTES || iv.length != IV_LENGTH_BYTES) {
+            throw new IllegalArgumentException("Invalid salt or IV length");
+        }
+        output.order(ByteOrder.BIG_ENDIAN);
+        output.put(MAGIC);
+        output.put(VERSION);
+        output.put(kdfId);
+        output.putInt(iterations);
+        output.put(salt);
+        output.put(iv);
+    }
+
+    public static byte[] encodeHeader(byte kdfId, int iterations, byte[] salt, byte[] iv) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        encodeHeader(header, kdfId, iterations, salt, iv);
+        return header.array();
+    }
+
+    /** Заголовок целиком — используется как AAD. */
+    public ByteBuffer header() {
+        return header.duplicate();
+    }
+
+    public byte kdfId() {
+        return kdfId;
+    }
+
+    public int iterations() {
+        return iterations;
+    }
+
+    public ByteBuffer salt() {
+        return salt.duplicate();
+    }
+
+    public ByteBuffer iv() {
+        return iv.duplicate();
+    }
+
+    /** Шифртекст вместе с тегом GCM. */
+    public ByteBuffer ciphertext() {
+        return ciphertext.duplicate();
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer copy = buffer.duplicate();
+        copy.position(offset);
+        copy.limit(offset + length);
+        return copy.slice();
+    }
+}
@@ -0,0 +1,322 @@
+package com.syndes.javacomponents;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * FileCrypter — шифрование файлов (например, документов из Storage Access Framework)
+ * без String, Base64 и промежуточных byte[].
+ *
+ * Формат совпадает с {@link Crypter#encryptStream}: заголовок "s2" (читается и старый "s1")
+ * и сегменты AES-GCM.
+ * Вход читается через отображённые в память окна {@link MappedByteBuffer}, а если канал
+ * не поддерживает map (pipe, сетевой провайдер) — через прямые {@link ByteBuffer}.
+ * Шифр работает напрямую с буферами через {@code Cipher.doFinal(ByteBuffer, ByteBuffer)}.
+ *
+ * Каналы не закрываются.
+ */
+public final class FileCrypter {
+
+    private FileCrypter() { /* static only */ }
+
+    private static final String CIPHER_ALGORITHM = "AES/GCM/NoPadding";
+    private static final int TAG_LENGTH_BITS     = Crypter.TAG_LENGTH_BYTES * 8;
+
+    // Размер окна map: целое число сегментов, ~16 МБ адресного пространства за раз.
+    private static final int SEGMENTS_PER_WINDOW = 256;
+
+    public static void encrypt(FileChannel in, FileChannel out, char[] password)
+            throws IOException, GeneralSecurityException {
+
+        if (password == null || in == null || out == null) {
+            throw new IllegalArgumentException("Password and channels must be non-null");
+        }
+
+        byte[] salt = Nonces.salt(Crypter.SALT_LENGTH_BYTES);
+        byte[] noncePrefix = Nonces.salt(Crypter.STREAM_NONCE_PREFIX_BYTES);
+
+        int count = Crypter.getIterations();
+        byte[] header = Crypter.streamHeader(count, salt, noncePrefix);
+
+        byte[] key = null;
+        try {
+            key = Crypter.deriveKey(password, salt, count);
+            SecretKey secretKey = new SecretKeySpec(key, "AES");
+            Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+
+            writeFully(out, ByteBuffer.wrap(header));
+
+            Segments segments = openSegments(in, Crypter.STREAM_SEGMENT_BYTES);
+            ByteBuffer output = ByteBuffer.allocateDirect(
+                    Crypter.STREAM_SEGMENT_BYTES + Crypter.TAG_LENGTH_BYTES);
+
+            int counter = 0;
+            ByteBuffer segment;
+            while ((segment = segments.next()) != null) {
+                cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(TAG_LENGTH_BITS,
+                        Crypter.streamNonce(noncePrefix, counter, segments.isLast())));
+                cipher.updateAAD(header);
+
+                output.clear();
+                cipher.doFinal(segment, output);
+                output.flip();
+                writeFully(out, output);
+
+                if (!segments.isLast()) {
+                    counter = Crypter.nextCounter(counter);
+                }
+            }
+            segments.wipe();
+
+        } finally {
+            if (key != null) java.util.Arrays.fill(key, (byte) 0);
+            java.util.Arrays.fill(password, '\0');
+        }
+    }
+
+    /**
+     * Расшифровывает файл, созданный {@link #encrypt} или {@link Crypter#encryptStream}.
+     * При ошибке проверки выходной файл содержит только часть открытого текста
+     * и должен быть удалён вызывающим кодом.
+     */
+    public static void decrypt(FileChannel in, FileChannel out, char[] password)
+            throws IOException, GeneralSecurityException {
+
+        if (password == null || in == null || out == null) {
+            throw new IllegalArgumentException("Password and channels must be non-null");
+        }
+
+        // Сначала версия: от неё зависит длина заголовка ("s2" или старый "s1").
+        ByteBuffer headerBuffer = ByteBuffer.allocate(Crypter.STREAM_HEADER_BYTES);
+        headerBuffer.limit(Crypter.STREAM_VERSION_BYTES);
+        int headerLength = readFully(in, headerBuffer) == Crypter.STREAM_VERSION_BYTES
+                ? Crypter.streamHeaderLength(headerBuffer.array()) : -1;
+        if (headerLength > 0) {
+            headerBuffer.limit(headerLength);
+            if (readFully(in, headerBuffer) != headerLength - Crypter.STREAM_VERSION_BYTES) {
+                headerLength = -1;
+            }
+        }
+        if (headerLength < 0) {
+            java.util.Arrays.fill(password, '\0');
+            throw new IllegalArgumentException("Invalid input format or version");
+        }
+        byte[] header = java.util.Arrays.copyOf(headerBuffer.array(), headerLength);
+        byte[] salt = new byte[Crypter.SALT_LENGTH_BYTES];
+        byte[] noncePrefix = new byte[Crypter.STREAM_NONCE_PREFIX_BYTES];
+        int count = Crypter.parseStreamHeader(header, salt, noncePrefix);
+
+        byte[] key = null;
+        try {
+            key = Crypter.deriveKey(password, salt, count);
+            SecretKey secretKey = new SecretKeySpec(key, "AES");
+            Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+
+            Segments segments = openSegments(in,
+                    Crypter.STREAM_SEGMENT_BYTES + Crypter.TAG_LENGTH_BYTES);
+            ByteBuffer output = ByteBuffer.allocateDirect(Crypter.STREAM_SEGMENT_BYTES);
+
+            int counter = 0;
+            ByteBuffer segment;
+            while ((segment = segments.next()) != null) {
+                if (segment.remaining() < Crypter.TAG_LENGTH_BYTES) {
+                    throw new AEADBadTagException("Truncated stream segment");
+                }
+
+                cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(TAG_LENGTH_BITS,
+                        Crypter.streamNonce(noncePrefix, counter, segments.isLast())));
+                cipher.updateAAD(header);
+
+                output.clear();
+                cipher.doFinal(segment, output);
+                output.flip();
+                writeFully(out, output);
+
+                if (!segments.isLast()) {
+                    counter = Crypter.nextCounter(counter);
+                }
+            }
+            wipe(output);
+
+        } finally {
+            if (key != null) java.util.Arrays.fill(key, (byte) 0);
+            java.util.Arrays.fill(password, '\0');
+        }
+    }
+
+    /*
+     * Выбирает способ чтения: map для обычных файлов, прямые буферы для всего остального.
+     */
+    private static Segments openSegments(FileChannel in, int segmentLength) throws IOException {
+        try {
+            long position = in.position();
+            long size = in.size();
+            if (size > position) {
+                // Проверяем, что канал вообще умеет map, до начала записи вывода.
+                in.map(FileChannel.MapMode.READ_ONLY, position, 0);
+                return new MappedSegments(in, position, size, segmentLength);
+            }
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException ignored) {
+            // Не файл — читаем последовательно.
+        }
+        return new ChannelSegments(in, segmentLength);
+    }
+
+    /*
+     * Последовательность сегментов входа. Последний сегмент должен быть известен заранее,
+     * потому что признак последнего сегмента входит в nonce.
+     */
+    private interface Segments {
+        /* Следующий сегмент или null, если вход исчерпан. */
+        ByteBuffer next() throws IOException;
+
+        /* Является ли сегмент, возвращённый последним вызовом next(), последним во входе. */
+        boolean isLast();
+
+        void wipe();
+    }
+
+    private static final class MappedSegments implements Segments {
+        private final FileChannel channel;
+        private final long end;
+        private final int segmentLength;
+        private long offset;
+        private long windowStart;
+        private MappedByteBuffer window;
+        private boolean last;
+        private boolean done;
+
+        MappedSegments(FileChannel channel, long start, long end, int segmentLength) {
+            this.channel = channel;
+            this.offset = start;
+            this.end = end;
+            this.segmentLength = segmentLength;
+        }
+
+        @Override
+        public ByteBuffer next() throws IOException {
+            if (done) {
+                return null;
+            }
+
+            int length = (int) Math.min(segmentLength, end - offset);
+            last = offset + length >= end;
+
+            if (window == null || offset + length > windowStart + window.capacity()) {
+                windowStart = offset;
+                long windowLength = Math.min((long) segmentLength * SEGMENTS_PER_WINDOW,
+                        end - offset);
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+            }
+
+            ByteBuffer segment = window.duplicate();
+            int from = (int) (offset - windowStart);
+            segment.limit(from + length);
+            segment.position(from);
+
+            offset += length;
+            done = last;
+            if (done) {
+                channel.position(end);
+            }
+            return segment;
+        }
+
+        @Override
+        public boolean isLast() {
+            return last;
+        }
+
+        @Override
+        public void wipe() {
+            window = null;
+        }
+    }
+
+    private static final class ChannelSegments implements Segments {
+        private final FileChannel channel;
+        private ByteBuffer current;
+        private ByteBuffer next;
+        private boolean started;
+        private boolean last;
+
+        ChannelSegments(FileChannel channel, int segmentLength) {
+            this.channel = channel;
+            this.current = ByteBuffer.allocateDirect(segmentLength);
+            this.next = ByteBuffer.allocateDirect(segmentLength);
+        }
+
+        @Override
+        public ByteBuffer next() throws IOException {
+            if (last) {
+                return null;
+            }
+
+            if (!started) {
+                started = true;
+                current.clear();
+                readFully(channel, current);
+                current.flip();
+            } else {
+                ByteBuffer swap = current;
+                current = next;
+                next = swap;
+            }
+
+            // Опережающее чтение: если следующего сегмента нет, текущий — последний.
+            next.clear();
+            if (current.limit() == current.capacity()) {
+                readFully(channel, next);
+            }
+            next.flip();
+            last = !next.hasRemaining();
+            return current;
+        }
+
+        @Override
+        public boolean isLast() {
+            return last;
+        }
+
+        @Override
+        public void wipe() {
+            FileCrypter.wipe(current);
+            FileCrypter.wipe(next);
+        }
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void wipe(ByteBuffer buffer) {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            buffer.put((byte) 0);
+        }
+        buffer.clear();
+    }
+}
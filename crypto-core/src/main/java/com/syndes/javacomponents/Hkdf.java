@@ -0,0 +1,57 @@
+package com.syndes.javacomponents;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Hkdf — HKDF-SHA256 (RFC 5869): подключи из уже сильного ключа, без перебора.
+ *
+ * Экземпляр держит один Mac и не потокобезопасен; создаётся на серию вызовов
+ * (например, на пакет {@link Crypter#encryptBatch}), чтобы не искать провайдера каждый раз.
+ */
+final class Hkdf {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int HASH_BYTES = 32;
+
+    private final Mac mac;
+
+    Hkdf() throws GeneralSecurityException {
+        mac = Mac.getInstance(ALGORITHM);
+    }
+
+    /**
+     * OKM = HKDF-Expand(HKDF-Extract(salt, ikm), info, length).
+     */
+    byte[] derive(byte[] ikm, byte[] salt, byte[] info, int length) throws GeneralSecurityException {
+        if (length < 1 || length > 255 * HASH_BYTES) {
+            throw new IllegalArgumentException("Invalid HKDF output length");
+        }
+
+        // Пустая соль по RFC 5869 — HashLen нулевых байтов; SecretKeySpec пустой ключ не примет.
+        mac.init(new SecretKeySpec(salt.length > 0 ? salt : new byte[HASH_BYTES], ALGORITHM));
+        byte[] prk = mac.doFinal(ikm);
+
+        byte[] okm = new byte[length];
+        byte[] block = new byte[0];
+        try {
+            mac.init(new SecretKeySpec(prk, ALGORITHM));
+            for (int i = 1, offset = 0; offset < length; i++) {
+                mac.update(block);
+                mac.update(info);
+                mac.update((byte) i);
+                java.util.Arrays.fill(block, (byte) 0);
+                block = mac.doFinal();
+                int n = Math.min(HASH_BYTES, length - offset);
+                System.arraycopy(block, 0, okm, offset, n);
+                offset += n;
+            }
+            return okm;
+        } finally {
+            java.util.Arrays.fill(prk, (byte) 0);
+            java.util.Arrays.fill(block, (byte) 0);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.syndes.javacomponents;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * Kdf — функция выработки ключа из пароля. Реализации не хранят состояния между вызовами
+ * и могут использоваться из нескольких потоков одновременно.
+ */
+public interface Kdf {
+
+    /**
+     * Ход вычисления и отмена. Методы вызываются из рабочего потока, выполняющего {@link #derive}.
+     */
+    interface Progress {
+        void publish(int percent);
+
+        boolean isCancelled();
+    }
+
+    /**
+     * Вырабатывает ключ длиной keyLength байт.
+     *
+     * @param cost параметр стоимости в формате конкретной KDF: для {@link Pbkdf2} — число итераций,
+     *             для {@link Scrypt} — упакованные N, r, p (см. {@link Scrypt#cost})
+     * @param progress может быть null — тогда вычисление прерывается по {@link Thread#interrupt()}
+     * @throws java.util.concurrent.CancellationException если вычисление отменено
+     */
+    byte[] derive(char[] password, byte[] salt, int cost, int keyLength, Progress progress)
+            throws GeneralSecurityException;
+}
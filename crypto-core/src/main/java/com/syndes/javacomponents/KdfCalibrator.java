@@ -0,0 +1,97 @@
+package com.syndes.javacomponents;
+
+/**
+ * KdfCalibrator — подбирает число итераций PBKDF2 под устройство.
+ *
+ * Замеряет {@link Pbkdf2} на пробном числе итераций и масштабирует результат до целевой
+ * задержки одного вывода ключа. Результат не опускается ниже {@link #MIN_CALIBRATED_ITERATIONS},
+ * чтобы на медленном устройстве пароль не становился дешевле для перебора, чем нужно.
+ * Замер занимает примерно 100–300 мс процессорного времени и должен выполняться в фоне;
+ * результат стоит сохранить и передавать в {@link Crypter#setIterations} при запуске.
+ * То же для scrypt: {@link #calibrateScrypt} и {@link Crypter#setScryptCost}.
+ */
+public final class KdfCalibrator {
+
+    private KdfCalibrator() { /* static only */ }
+
+    // Целевая задержка одного вывода ключа (шифрование, расшифровка, разблокировка).
+    public static final long DEFAULT_TARGET_MILLIS = 300;
+
+    static final int MIN_CALIBRATED_ITERATIONS = 50000;
+
+    private static final int PROBE_ITERATIONS = 10000;
+    private static final int PROBE_RUNS = 3;
+    private static final int ROUNDING = 1000;
+
+    /**
+     * @return число итераций, при котором вывод ключа занимает около targetMillis
+     * @throws java.util.concurrent.CancellationException если поток прерван во время замера
+     */
+    public static int calibrate(long targetMillis) {
+        if (targetMillis <= 0) {
+            throw new IllegalArgumentException("Target latency must be positive");
+        }
+
+        Pbkdf2 kdf = new Pbkdf2();
+        char[] password = "calibration".toCharArray();
+        byte[] salt = new byte[Crypter.SALT_LENGTH_BYTES];
+
+        // Первый прогон прогревает JIT, дальше берётся лучший: шум бывает только в сторону замедления.
+        kdf.derive(password, salt, PROBE_ITERATIONS, 32, null);
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < PROBE_RUNS; run++) {
+            long start = System.nanoTime();
+            kdf.derive(password, salt, PROBE_ITERATIONS, 32, null);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        long scaled = PROBE_ITERATIONS * (targetMillis * 1000000L) / Math.max(1, best);
+        scaled = scaled / ROUNDING * ROUNDING;
+        return (int) Math.max(MIN_CALIBRATED_ITERATIONS, Math.min(Crypter.MAX_ITERATIONS, scaled));
+    }
+
+    /**
+     * Подбирает параметры {@link Scrypt}: N — наибольшее, при котором линии, работающие
+     * одновременно (по одной на ядро), умещаются в memoryBudgetBytes; p — столько линий,
+     * сколько успевает выполниться на всех ядрах за targetMillis.
+     *
+     * @return упакованные параметры для {@link Crypter#setScryptCost}
+     * @throws java.util.concurrent.CancellationException если поток прерван во время замера
+     */
+    public static int calibrateScrypt(long targetMillis, long memoryBudgetBytes) {
+        if (targetMillis <= 0 || memoryBudgetBytes <= 0) {
+            throw new IllegalArgumentException("Target latency and memory budget must be positive");
+        }
+
+        int r = Scrypt.DEFAULT_BLOCK_SIZE;
+        int lanesAtOnce = Math.min(ParallelCrypter.THREADS, Scrypt.MAX_PARALLELISM);
+        int lanesInMemory = Math.min(ParallelCrypter.THREADS + 1, Scrypt.MAX_PARALLELISM);
+        int log2N = Scrypt.MIN_LOG2_N;
+        while (log2N < Scrypt.MAX_LOG2_N
+                && (128L * r << (log2N + 1)) <= Scrypt.MAX_LANE_MEMORY_BYTES
+                && (128L * r << (log2N + 1)) * lanesInMemory <= memoryBudgetBytes) {
+            log2N++;
+        }
+
+        Scrypt kdf = new Scrypt();
+        char[] password = "calibration".toCharArray();
+        byte[] salt = new byte[Crypter.SALT_LENGTH_BYTES];
+        int probe = Scrypt.cost(log2N, r, 1);
+
+        kdf.derive(password, salt, probe, 32, null);
+        long start = System.nanoTime();
+        kdf.derive(password, salt, probe, 32, null);
+        long lane = Math.max(1, System.nanoTime() - start);
+
+        // Одна линия не должна выходить за целевую задержку: уменьшаем N (время линии ~ N).
+        long target = targetMillis * 1000000L;
+        while (lane > target && log2N > Scrypt.MIN_LOG2_N) {
+            log2N--;
+            lane /= 2;
+        }
+
+        long rounds = Math.max(1, target / lane);
+        int p = (int) Math.min(Scrypt.MAX_PARALLELISM, rounds * lanesAtOnce);
+        return Scrypt.cost(log2N, r, p);
+    }
+}
@@ -0,0 +1,142 @@
+package com.syndes.javacomponents;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * KeyCache — ограниченный LRU-кэш выведенных ключей для {@link Crypter}.
+ *
+ * Повторная расшифровка того же шифротекста (или нескольких с общей солью) не запускает
+ * KDF заново. Ключ кэша — HMAC-SHA256 от (KDF, стоимость, соль, пароль) на случайном секрете
+ * процесса: пароль в кэше не хранится, а отпечаток бесполезен вне процесса.
+ * Ключи выдаются копиями; вытесненные и удалённые ключи затираются нулями.
+ *
+ * По умолчанию выключен (ёмкость 0). Все методы потокобезопасны; KDF при промахе
+ * выполняется вне блокировки.
+ */
+final class KeyCache {
+
+    private static final String FINGERPRINT_ALGORITHM = "HmacSHA256";
+
+    private final Map<ByteBuffer, byte[]> entries = new LinkedHashMap<ByteBuffer, byte[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteBuffer, byte[]> eldest) {
+            if (size() > capacity) {
+                java.util.Arrays.fill(eldest.getValue(), (byte) 0);
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private int capacity = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private byte[] secret;
+
+    interface Derivation {
+        byte[] derive() throws GeneralSecurityException;
+    }
+
+    synchronized void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative");
+        }
+        this.capacity = capacity;
+        trimTo(capacity);
+    }
+
+    synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Возвращает ключ из кэша или вырабатывает его через derivation и запоминает.
+     * @return копия ключа; вызывающий код может её затереть
+     */
+    byte[] get(char[] password, byte[] salt, byte kdfId, int cost, Derivation derivation)
+            throws GeneralSecurityException {
+        ByteBuffer fingerprint;
+        synchronized (this) {
+            fingerprint = capacity > 0 ? fingerprint(password, salt, kdfId, cost) : null;
+            byte[] key = fingerprint != null ? entries.get(fingerprint) : null;
+            if (key != null) {
+                hits++;
+                return key.clone();
+            }
+            if (fingerprint != null) {
+                misses++;
+            }
+        }
+
+        // Вне блокировки и при выключенном кэше: иначе все выводы ключа в процессе шли бы по одному.
+        byte[] key = derivation.derive();
+        if (fingerprint == null) {
+            return key;
+        }
+        synchronized (this) {
+            if (capacity > 0) {
+                byte[] previous = entries.put(fingerprint, key.clone());
+                if (previous != null) {
+                    java.util.Arrays.fill(previous, (byte) 0);
+                }
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Затирает и удаляет все ключи. Ёмкость и счётчики сохраняются.
+     */
+    synchronized void clear() {
+        trimTo(0);
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    private void trimTo(int size) {
+        Iterator<byte[]> values = entries.values().iterator();
+        while (entries.size() > size && values.hasNext()) {
+            java.util.Arrays.fill(values.next(), (byte) 0);
+            values.remove();
+        }
+    }
+
+    private ByteBuffer fingerprint(char[] password, byte[] salt, byte kdfId, int cost)
+            throws GeneralSecurityException {
+        if (secret == null) {
+            secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+        }
+
+        ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+        try {
+            Mac mac = Mac.getInstance(FINGERPRINT_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, FINGERPRINT_ALGORITHM));
+            mac.update(kdfId);
+            mac.update(ByteBuffer.allocate(8).putInt(cost).putInt(salt.length).array());
+            mac.update(salt);
+            mac.update(encoded.duplicate());
+            return ByteBuffer.wrap(mac.doFinal());
+        } finally {
+            if (encoded.hasArray()) {
+                java.util.Arrays.fill(encoded.array(), (byte) 0);
+            }
+        }
+    }
+}
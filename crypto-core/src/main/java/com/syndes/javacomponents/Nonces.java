@@ -0,0 +1,90 @@
+package com.syndes.javacomponents;
+
+import java.security.SecureRandom;
+
+/**
+ * Nonces — общий источник солей и nonce для {@link Crypter}, {@link FileCrypter} и
+ * {@link ParallelCrypter}.
+ *
+ * SecureRandom создаётся и засевается один раз на процесс, а не на каждый вызов
+ * (засев может ждать энтропию). Случайные байты (соли, префиксы nonce потоков) выдаются
+ * из буфера, который пополняется одним вызовом nextBytes на {@link #POOL_BYTES} байт;
+ * выданные байты в буфере затираются.
+ *
+ * Nonce GCM ({@link #nonce}) — случайный префикс сессии || 64-битный счётчик: в пределах
+ * процесса nonce не повторяются при любой длине. При переполнении счётчика префикс
+ * выбирается заново. Все методы потокобезопасны.
+ */
+final class Nonces {
+
+    static final int POOL_BYTES = 4096;
+    static final int COUNTER_BYTES = 8;
+    private static final int PREFIX_BYTES = 8;
+
+    private static SecureRandom random;
+    private static final byte[] pool = new byte[POOL_BYTES];
+    private static int poolPosition = POOL_BYTES;
+
+    private static final byte[] prefix = new byte[PREFIX_BYTES];
+    private static long counter = 0;
+
+    private Nonces() {
+    }
+
+    /**
+     * Заполняет out случайными байтами из буфера.
+     */
+    static synchronized void fill(byte[] out) {
+        int offset = 0;
+        while (offset < out.length) {
+            if (poolPosition == POOL_BYTES) {
+                refill();
+            }
+            int n = Math.min(out.length - offset, POOL_BYTES - poolPosition);
+            System.arraycopy(pool, poolPosition, out, offset, n);
+            java.util.Arrays.fill(pool, poolPosition, poolPosition + n, (byte) 0);
+            poolPosition += n;
+            offset += n;
+        }
+    }
+
+    static byte[] salt(int length) {
+        byte[] salt = new byte[length];
+        fill(salt);
+        return salt;
+    }
+
+    /**
+     * @param length длина nonce, от {@link #COUNTER_BYTES} + 4 байт
+     * @return префикс сессии (сколько поместится) и следующее значение счётчика, big-endian
+     */
+    static synchronized byte[] nonce(int length) {
+        if (length < COUNTER_BYTES + 4) {
+            throw new IllegalArgumentException("Nonce too short for a counter");
+        }
+        if (counter == 0) {
+            // Первый вызов или счётчик прошёл все 2^64 значений: новый префикс.
+            fill(prefix);
+        }
+
+        byte[] nonce = new byte[length];
+        int prefixLength = length - COUNTER_BYTES;
+        for (int i = 0; i < prefixLength; i++) {
+            nonce[i] = prefix[i % PREFIX_BYTES];
+        }
+        long value = counter++;
+        for (int i = length - 1; i >= prefixLength; i--) {
+            nonce[i] = (byte) value;
+            value >>>= 8;
+        }
+        return nonce;
+    }
+
+    private static void refill() {
+        if (random == null) {
+            random = new SecureRandom();
+        }
+        random.nextBytes(pool);
+        poolPosition = 0;
+    }
+}
@@ -0,0 +1,219 @@
+package com.syndes.javacomponents;
+
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * ParallelCrypter — многопоточное шифрование больших буферов в памяти.
+ *
+ * Ключ выводится один раз, затем независимые сегменты AES-GCM шифруются/расшифровываются
+ * параллельно на всех ядрах. Формат вывода — тот же STREAM "s2", что и у
+ * {@link Crypter#encryptStream} и {@link FileCrypter}: номер сегмента и признак
+ * последнего сегмента входят в nonce, поэтому порядок и число сегментов аутентифицированы.
+ * Каждый поток пишет в свой диапазон общего выходного массива, так что сборка
+ * результата в исходном порядке ничего не стоит.
+ *
+ * ForkJoinPool недоступен на minSdk 19, поэтому используется фиксированный пул потоков.
+ *
+ * Сравнение с однократным doFinal контейнера v2 — ParallelBenchmark в модуле benchmark.
+ * Выигрыш есть и на одном ядре: его даёт уже разбиение на сегменты.
+ */
+public final class ParallelCrypter {
+
+    private ParallelCrypter() { /* static only */ }
+
+    private static final String CIPHER_ALGORITHM = "AES/GCM/NoPadding";
+    private static final int TAG_LENGTH_BITS     = Crypter.TAG_LENGTH_BYTES * 8;
+    private static final int ENCRYPTED_SEGMENT_BYTES =
+            Crypter.STREAM_SEGMENT_BYTES + Crypter.TAG_LENGTH_BYTES;
+
+    static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    private static ExecutorService pool;
+
+    /*
+     * Общий пул потоков для сегментов и для линий {@link Scrypt}.
+     */
+    static synchronized ExecutorService pool() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+                private int count = 1;
+
+                @Override
+                public synchronized Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "parallel-crypter-" + count++);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return pool;
+    }
+
+    public static byte[] encrypt(byte[] plaintext, char[] password)
+            throws GeneralSecurityException {
+
+        if (password == null || plaintext == null) {
+            throw new IllegalArgumentException("Password and plaintext must be non-null");
+        }
+
+        byte[] salt = Nonces.salt(Crypter.SALT_LENGTH_BYTES);
+        byte[] noncePrefix = Nonces.salt(Crypter.STREAM_NONCE_PREFIX_BYTES);
+
+        int count = Crypter.getIterations();
+        final byte[] header = Crypter.streamHeader(count, salt, noncePrefix);
+
+        // Пустой вход — один пустой последний сегмент, как в encryptStream.
+        int segments = Math.max(1,
+                (plaintext.length + Crypter.STREAM_SEGMENT_BYTES - 1) / Crypter.STREAM_SEGMENT_BYTES);
+        byte[] output = new byte[header.length + plaintext.length
+                + segments * Crypter.TAG_LENGTH_BYTES];
+        System.arraycopy(header, 0, output, 0, header.length);
+
+        byte[] key = null;
+        try {
+            key = Crypter.deriveKey(password, salt, count);
+            run(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), header, noncePrefix,
+                    plaintext, 0, plaintext.length, output, header.length, segments);
+            return output;
+
+        } finally {
+            if (key != null) java.util.Arrays.fill(key, (byte) 0);
+            java.util.Arrays.fill(password, '\0');
+        }
+    }
+
+    /**
+     * Расшифровывает результат {@link #encrypt} или {@link Crypter#encryptStream}.
+     * Если хотя бы один сегмент не прошёл проверку, бросается {@link AEADBadTagException}.
+     */
+    public static byte[] decrypt(byte[] input, char[] password)
+            throws GeneralSecurityException {
+
+        if (password == null || input == null) {
+            throw new IllegalArgumentException("Password and input must be non-null");
+        }
+
+        int headerLength = Crypter.streamHeaderLength(input);
+        int body = input.length - headerLength;
+        if (headerLength < 0 || body < Crypter.TAG_LENGTH_BYTES) {
+            java.util.Arrays.fill(password, '\0');
+            throw new IllegalArgumentException("Invalid input format or version");
+        }
+
+        byte[] header = java.util.Arrays.copyOf(input, headerLength);
+        byte[] salt = new byte[Crypter.SALT_LENGTH_BYTES];
+        byte[] noncePrefix = new byte[Crypter.STREAM_NONCE_PREFIX_BYTES];
+        int count = Crypter.parseStreamHeader(header, salt, noncePrefix);
+
+        int segments = (body + ENCRYPTED_SEGMENT_BYTES - 1) / ENCRYPTED_SEGMENT_BYTES;
+        int lastSegment = body - (segments - 1) * ENCRYPTED_SEGMENT_BYTES;
+        if (lastSegment < Crypter.TAG_LENGTH_BYTES) {
+            java.util.Arrays.fill(password, '\0');
+            throw new AEADBadTagException("Truncated stream segment");
+        }
+        byte[] output = new byte[body - segments * Crypter.TAG_LENGTH_BYTES];
+
+        byte[] key = null;
+        try {
+            key = Crypter.deriveKey(password, salt, count);
+            run(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), header, noncePrefix,
+                    input, header.length, body, output, 0, segments);
+            return output;
+
+        } catch (GeneralSecurityException error) {
+            java.util.Arrays.fill(output, (byte) 0);
+            throw error;
+        } finally {
+            if (key != null) java.util.Arrays.fill(key, (byte) 0);
+            java.util.Arrays.fill(password, '\0');
+        }
+    }
+
+    /*
+     * Делит сегменты на непрерывные диапазоны — по одному на поток — и ждёт их завершения.
+     */
+    private static void run(final int mode, final SecretKey key, final byte[] header,
+                            final byte[] noncePrefix,
+                            final byte[] input, final int inputOffset, final int inputLength,
+                            final byte[] output, final int outputOffset, final int segments)
+            throws GeneralSecurityException {
+
+        final int inSegment = mode == Cipher.ENCRYPT_MODE
+                ? Crypter.STREAM_SEGMENT_BYTES : ENCRYPTED_SEGMENT_BYTES;
+        final int outSegment = mode == Cipher.ENCRYPT_MODE
+                ? ENCRYPTED_SEGMENT_BYTES : Crypter.STREAM_SEGMENT_BYTES;
+
+        int tasks = Math.min(THREADS, segments);
+        int perTask = (segments + tasks - 1) / tasks;
+
+        List<Callable<Void>> work = new ArrayList<>(tasks);
+        for (int first = 0; first < segments; first += perTask) {
+            final int from = first;
+            final int to = Math.min(segments, first + perTask);
+            work.add(new Callable<Void>() {
+                @Override
+                public Void call() throws GeneralSecurityException {
+                    Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+                    for (int i = from; i < to; i++) {
+                        boolean last = i == segments - 1;
+                        int inStart = inputOffset + i * inSegment;
+                        int inLength = last ? inputOffset + inputLength - inStart : inSegment;
+
+                        cipher.init(mode, key, new GCMParameterSpec(TAG_LENGTH_BITS,
+                                Crypter.streamNonce(noncePrefix, i, last)));
+                        cipher.updateAAD(header);
+                        cipher.doFinal(input, inStart, inLength, output, outputOffset + i * outSegment);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        if (work.size() == 1) {
+            try {
+                work.get(0).call();
+            } catch (GeneralSecurityException error) {
+                throw error;
+            } catch (Exception error) {
+                throw new IllegalStateException(error);
+            }
+            return;
+        }
+
+        List<Future<Void>> results;
+        try {
+            results = pool().invokeAll(work);
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", error);
+        }
+
+        for (Future<Void> result : results) {
+            try {
+                result.get();
+            } catch (ExecutionException error) {
+                if (error.getCause() instanceof GeneralSecurityException) {
+                    throw (GeneralSecurityException) error.getCause();
+                }
+                throw new IllegalStateException(error.getCause());
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted", error);
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.syndes.javacomponents;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Pbkdf2 — собственная реализация PBKDF2-HMAC-SHA256 (RFC 8018), побайтно совпадающая
+ * с "PBKDF2WithHmacSHA256" из JCA (пароль кодируется в UTF-8).
+ *
+ * Работает на уровне функции сжатия SHA-256:
+ *  - состояния после блоков ipad и opad вычисляются один раз на пароль;
+ *  - каждая итерация — ровно два сжатия (U_i занимает 32 байта, дополнение до блока постоянное),
+ *    без MessageDigest.clone(), без перевода int ↔ byte и без выделения памяти в цикле;
+ *  - раз в {@link #CHECK_INTERVAL} итераций проверяется отмена и публикуется прогресс.
+ */
+public final class Pbkdf2 implements Kdf {
+
+    private static final int BLOCK_BYTES = 64;
+    private static final int HASH_BYTES = 32;
+    private static final int HASH_WORDS = HASH_BYTES / 4;
+
+    // Степень двойки: проверка делается маской.
+    private static final int CHECK_INTERVAL = 4096;
+
+    private static final int[] INITIAL_STATE = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a,
+            0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    private static final int[] K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    @Override
+    public byte[] derive(char[] password, byte[] salt, int iterations, int keyLength, Progress progress) {
+        if (password == null || salt == null || iterations < 1 || keyLength < 1) {
+            throw new IllegalArgumentException("Invalid PBKDF2 parameters");
+        }
+
+        int[] inner = new int[HASH_WORDS];
+        int[] outer = new int[HASH_WORDS];
+        int[] w = new int[64];
+        int[] u = new int[HASH_WORDS];
+        int[] t = new int[HASH_WORDS];
+        int[] tmp = new int[HASH_WORDS];
+        byte[] first = java.util.Arrays.copyOf(salt, salt.length + 4);
+        byte[] output = new byte[keyLength];
+
+        byte[] key = utf8(password);
+        try {
+            padStates(key, inner, outer, w);
+        } finally {
+            java.util.Arrays.fill(key, (byte) 0);
+        }
+
+        int blocks = (keyLength + HASH_BYTES - 1) / HASH_BYTES;
+        long total = (long) blocks * iterations;
+        try {
+            for (int block = 1; block <= blocks; block++) {
+                // U_1 = HMAC(P, S || INT(block))
+                first[salt.length]     = (byte) (block >>> 24);
+                first[salt.length + 1] = (byte) (block >>> 16);
+                first[salt.length + 2] = (byte) (block >>> 8);
+                first[salt.length + 3] = (byte) block;
+                hash(inner, BLOCK_BYTES, first, tmp, w);
+
+                // Дальше сообщения всегда по 32 байта: дополнение в w[8..15] одно и то же,
+                // а compress() пишет только в w[16..63], так что достаточно задать его один раз.
+                w[8] = 0x80000000;
+                java.util.Arrays.fill(w, 9, 15, 0);
+                w[15] = (BLOCK_BYTES + HASH_BYTES) * 8;
+
+                System.arraycopy(tmp, 0, w, 0, HASH_WORDS);
+                compress(outer, w, u);
+                System.arraycopy(u, 0, t, 0, HASH_WORDS);
+
+                long done = (long) (block - 1) * iterations;
+                for (int i = 1; i < iterations; i++) {
+                    if ((i & (CHECK_INTERVAL - 1)) == 0) {
+                        checkpoint(progress, done + i, total);
+                    }
+                    System.arraycopy(u, 0, w, 0, HASH_WORDS);
+                    compress(inner, w, tmp);
+                    System.arraycopy(tmp, 0, w, 0, HASH_WORDS);
+                    compress(outer, w, u);
+
+                    t[0] ^= u[0]; t[1] ^= u[1]; t[2] ^= u[2]; t[3] ^= u[3];
+                    t[4] ^= u[4]; t[5] ^= u[5]; t[6] ^= u[6]; t[7] ^= u[7];
+                }
+
+                int offset = (block - 1) * HASH_BYTES;
+                for (int j = 0; j < HASH_WORDS && offset < keyLength; j++) {
+                    for (int shift = 24; shift >= 0 && offset < keyLength; shift -= 8) {
+                        output[offset++] = (byte) (t[j] >>> shift);
+                    }
+                }
+            }
+        } catch (RuntimeException error) {
+            java.util.Arrays.fill(output, (byte) 0);
+            throw error;
+        } finally {
+            java.util.Arrays.fill(inner, 0);
+            java.util.Arrays.fill(outer, 0);
+            java.util.Arrays.fill(w, 0);
+            java.util.Arrays.fill(u, 0);
+            java.util.Arrays.fill(t, 0);
+            java.util.Arrays.fill(tmp, 0);
+        }
+
+        if (progress != null) {
+            progress.publish(100);
+        }
+        return output;
+    }
+
+    private static void checkpoint(Progress progress, long done, long total) {
+        if (progress == null) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Key derivation cancelled");
+            }
+            return;
+        }
+        if (progress.isCancelled()) {
+            throw new CancellationException("Key derivation cancelled");
+        }
+        progress.publish((int) (done * 100 / total));
+    }
+
+    /*
+     * То же, что getPasswordBytes() в JCA: UTF-8 через Charset.encode (некорректные суррогаты → '?').
+     */
+    private static byte[] utf8(char[] password) {
+        ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        if (encoded.hasArray()) {
+            java.util.Arrays.fill(encoded.array(), (byte) 0);
+        }
+        return bytes;
+    }
+
+    /*
+     * Состояния SHA-256 после одного блока (K ^ ipad) и (K ^ opad).
+     */
+    private static void padStates(byte[] key, int[] inner, int[] outer, int[] w) {
+        byte[] block = new byte[BLOCK_BYTES];
+        try {
+            if (key.length > BLOCK_BYTES) {
+                int[] digest = new int[HASH_WORDS];
+                hash(INITIAL_STATE, 0, key, digest, w);
+                for (int j = 0; j < HASH_WORDS; j++) {
+                    block[4 * j]     = (byte) (digest[j] >>> 24);
+                    block[4 * j + 1] = (byte) (digest[j] >>> 16);
+                    block[4 * j + 2] = (byte) (digest[j] >>> 8);
+                    block[4 * j + 3] = (byte) digest[j];
+                }
+                java.util.Arrays.fill(digest, 0);
+            } else {
+                System.arraycopy(key, 0, block, 0, key.length);
+            }
+
+            loadWords(block, 0, w, 0x36363636);
+            compress(INITIAL_STATE, w, inner);
+            loadWords(block, 0, w, 0x5c5c5c5c);
+            compress(INITIAL_STATE, w, outer);
+        } finally {
+            java.util.Arrays.fill(block, (byte) 0);
+        }
+    }
+
+    /*
+     * SHA-256 сообщения message, продолжая состояние state, после которого уже обработано
+     * prefixBytes байт (кратно размеру блока). Используется только вне горячего цикла.
+     */
+    private static void hash(int[] state, int prefixBytes, byte[] message, int[] out, int[] w) {
+        int padded = (message.length + 9 + BLOCK_BYTES - 1) / BLOCK_BYTES * BLOCK_BYTES;
+        byte[] buffer = java.util.Arrays.copyOf(message, padded);
+        try {
+            buffer[message.length] = (byte) 0x80;
+            long bits = ((long) prefixBytes + message.length) * 8;
+            for (int i = 0; i < 8; i++) {
+                buffer[padded - 1 - i] = (byte) (bits >>> (8 * i));
+            }
+
+            System.arraycopy(state, 0, out, 0, HASH_WORDS);
+            for (int offset = 0; offset < padded; offset += BLOCK_BYTES) {
+                loadWords(buffer, offset, w, 0);
+                compress(out, w, out);
+            }
+        } finally {
+            java.util.Arrays.fill(buffer, (byte) 0);
+        }
+    }
+
+    private static void loadWords(byte[] block, int offset, int[] w, int mask) {
+        for (int j = 0; j < 16; j++, offset += 4) {
+            w[j] = ((block[offset] & 0xFF) << 24 | (block[offset + 1] & 0xFF) << 16
+                    | (block[offset + 2] & 0xFF) << 8 | (block[offset + 3] & 0xFF)) ^ mask;
+        }
+    }
+
+    /*
+     * Функция сжатия SHA-256: out = state + F(state, w[0..15]). w[16..63] — рабочая область;
+     * w[0..15] не меняется. out может совпадать со state.
+     */
+    private static void compress(int[] state, int[] w, int[] out) {
+        for (int j = 16; j < 64; j++) {
+            int x = w[j - 15];
+            int y = w[j - 2];
+            int s0 = Integer.rotateRight(x, 7) ^ Integer.rotateRight(x, 18) ^ (x >>> 3);
+            int s1 = Integer.rotateRight(y, 17) ^ Integer.rotateRight(y, 19) ^ (y >>> 10);
+            w[j] = w[j - 16] + s0 + w[j - 7] + s1;
+        }
+
+        int a = state[0], b = state[1], c = state[2], d = state[3];
+        int e = state[4], f = state[5], g = state[6], h = state[7];
+
+        for (int j = 0; j < 64; j++) {
+            int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+            int ch = (e & f) ^ (~e & g);
+            int t1 = h + s1 + ch + K[j] + w[j];
+            int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+            int maj = (a & b) ^ (a & c) ^ (b & c);
+            int t2 = s0 + maj;
+            h = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+
+        out[0] = state[0] + a;
+        out[1] = state[1] + b;
+        out[2] = state[2] + c;
+        out[3] = state[3] + d;
+        out[4] = state[4] + e;
+        out[5] = state[5] + f;
+        out[6] = state[6] + g;
+        out[7] = state[7] + h;
+    }
+}
@@ -0,0 +1,158 @@
+package com.syndes.javacomponents;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * ResultCache — кэш результатов расшифровки: повторная расшифровка того же шифротекста
+ * тем же паролем — поиск по хэшу вместо Crypter2, Base64, KDF и GCM.
+ *
+ * Ключ записи — HMAC-SHA256 (пароль, шифротекст) на секрете сессии; открытый текст хранится
+ * зашифрованным AES-GCM на случайном ключе сессии, так что в дампе памяти кэш бесполезен
+ * без этого ключа. {@link #clear()} забывает и записи, и ключи сессии; вызывать при блокировке
+ * и нехватке памяти. Размер ограничен числом записей (LRU); слишком длинные тексты не кэшируются.
+ * Потокобезопасен.
+ */
+public final class ResultCache {
+
+    private static final String CIPHER_ALGORITHM = "AES/GCM/NoPadding";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private final int maxChars;
+
+    private final Map<ByteBuffer, byte[]> entries;
+    private final SecureRandom random = new SecureRandom();
+    private SecretKey sessionKey;
+    private SecretKey fingerprintKey;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param capacity наибольшее число записей
+     * @param maxChars тексты длиннее не кэшируются
+     */
+    public ResultCache(final int capacity, int maxChars) {
+        if (capacity < 1 || maxChars < 1) {
+            throw new IllegalArgumentException("Capacity and size limit must be positive");
+        }
+        this.maxChars = maxChars;
+        this.entries = new LinkedHashMap<ByteBuffer, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, byte[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return открытый текст, если этот шифротекст уже расшифровывался этим паролем, иначе null
+     */
+    public synchronized String get(char[] password, String ciphertext) throws GeneralSecurityException {
+        if (sessionKey == null) {
+            misses++;
+            return null;
+        }
+        byte[] sealed = entries.get(fingerprint(password, ciphertext));
+        if (sealed == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+
+        Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+        cipher.init(Cipher.DECRYPT_MODE, sessionKey, new GCMParameterSpec(TAG_BITS, sealed, 0, IV_BYTES));
+        byte[] plain = cipher.doFinal(sealed, IV_BYTES, sealed.length - IV_BYTES);
+        try {
+            return new String(plain, StandardCharsets.UTF_8);
+        } finally {
+            java.util.Arrays.fill(plain, (byte) 0);
+        }
+    }
+
+    /**
+     * Запоминает результат расшифровки.
+     */
+    public synchronized void put(char[] password, String ciphertext, String plaintext)
+            throws GeneralSecurityException {
+        if (plaintext.length() > maxChars || ciphertext.length() > maxChars * 4) {
+            return;
+        }
+        if (sessionKey == null) {
+            sessionKey = newKey("AES");
+            fingerprintKey = newKey(MAC_ALGORITHM);
+        }
+
+        byte[] plain = plaintext.getBytes(StandardCharsets.UTF_8);
+        try {
+            byte[] sealed = new byte[IV_BYTES + plain.length + TAG_BITS / 8];
+            byte[] iv = new byte[IV_BYTES];
+            random.nextBytes(iv);
+            System.arraycopy(iv, 0, sealed, 0, IV_BYTES);
+
+            Cipher cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+            cipher.init(Cipher.ENCRYPT_MODE, sessionKey, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.doFinal(plain, 0, plain.length, sealed, IV_BYTES);
+            entries.put(fingerprint(password, ciphertext), sealed);
+        } finally {
+            java.util.Arrays.fill(plain, (byte) 0);
+        }
+    }
+
+    /**
+     * Забывает все записи и ключи сессии. Следующая запись создаст новые ключи.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        sessionKey = null;
+        fingerprintKey = null;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    private SecretKey newKey(String algorithm) {
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        try {
+            return new SecretKeySpec(key, algorithm);
+        } finally {
+            java.util.Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    private ByteBuffer fingerprint(char[] password, String ciphertext) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(fingerprintKey);
+
+        ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+        try {
+            mac.update(ByteBuffer.allocate(4).putInt(encoded.remaining()).array());
+            mac.update(encoded.duplicate());
+        } finally {
+            if (encoded.hasArray()) {
+                java.util.Arrays.fill(encoded.array(), (byte) 0);
+            }
+        }
+        mac.update(ciphertext.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(mac.doFinal());
+    }
+}
@@ -0,0 +1,267 @@
+package com.syndes.javacomponents;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Scrypt — memory-hard KDF (RFC 7914) с параллельными линиями.
+ *
+ * Параметр стоимости упакован в одно int (поле iterations заголовка {@link Envelope}):
+ *   log2(N) << 16 | r << 8 | p
+ * Линии ROMix (их p штук) независимы, поэтому выполняются одновременно: первая — в вызывающем
+ * потоке, остальные — в общем пуле {@link ParallelCrypter}. При p, равном числу ядер, время
+ * вывода ключа примерно равно времени одной линии, а стоимость перебора растёт в p раз.
+ * Одна линия держит 128 * r * N байт; одновременно в памяти не больше (число ядер + 1) линий:
+ * по одной на поток пула и одна в вызывающем потоке.
+ */
+public final class Scrypt implements Kdf {
+
+    // Границы параметров — защита от подделанного заголовка: вывод ключа идёт до проверки тега.
+    static final int MIN_LOG2_N = 10;
+    static final int MAX_LOG2_N = 20;
+    static final int MAX_BLOCK_SIZE = 32;
+    static final int MAX_PARALLELISM = 16;
+    static final long MAX_LANE_MEMORY_BYTES = 64L * 1024 * 1024;
+
+    static final int DEFAULT_BLOCK_SIZE = 8;
+
+    // Проверка отмены/прогресса — раз в столько шагов ROMix (степень двойки).
+    private static final int CHECK_INTERVAL = 1024;
+
+    private static final Pbkdf2 PBKDF2 = new Pbkdf2();
+
+    public static int cost(int log2N, int blockSize, int parallelism) {
+        int cost = log2N << 16 | blockSize << 8 | parallelism;
+        checkCost(cost);
+        return cost;
+    }
+
+    static int log2N(int cost) {
+        return cost >>> 16 & 0xFF;
+    }
+
+    static int blockSize(int cost) {
+        return cost >>> 8 & 0xFF;
+    }
+
+    static int parallelism(int cost) {
+        return cost & 0xFF;
+    }
+
+    /** Память одной линии: 128 * r * N байт. */
+    public static long laneMemoryBytes(int cost) {
+        return 128L * blockSize(cost) << log2N(cost);
+    }
+
+    /** Пиковая память вывода ключа с учётом числа линий, работающих одновременно. */
+    public static long peakMemoryBytes(int cost) {
+        return laneMemoryBytes(cost) * Math.min(parallelism(cost), ParallelCrypter.THREADS + 1);
+    }
+
+    /**
+     * @throws IllegalArgumentException если параметры вне допустимых границ
+     */
+    static void checkCost(int cost) {
+        int log2N = log2N(cost);
+        int r = blockSize(cost);
+        int p = parallelism(cost);
+        if ((cost >>> 24) != 0 || log2N < MIN_LOG2_N || log2N > MAX_LOG2_N
+                || r < 1 || r > MAX_BLOCK_SIZE || p < 1 || p > MAX_PARALLELISM
+                || laneMemoryBytes(cost) > MAX_LANE_MEMORY_BYTES) {
+            throw new IllegalArgumentException("Invalid scrypt parameters");
+        }
+    }
+
+    @Override
+    public byte[] derive(char[] password, byte[] salt, int cost, int keyLength,
+                         final Progress progress) {
+        if (password == null || salt == null || keyLength < 1) {
+            throw new IllegalArgumentException("Invalid scrypt parameters");
+        }
+        checkCost(cost);
+
+        final int n = 1 << log2N(cost);
+        final int r = blockSize(cost);
+        int p = parallelism(cost);
+        final int laneBytes = 128 * r;
+
+        final byte[] b = PBKDF2.derive(password, salt, 1, p * laneBytes, null);
+        try {
+            final Thread caller = Thread.currentThread();
+            final AtomicBoolean cancelled = new AtomicBoolean();
+
+            List<Future<?>> lanes = new ArrayList<>(p - 1);
+            for (int lane = 1; lane < p; lane++) {
+                final int offset = lane * laneBytes;
+                lanes.add(ParallelCrypter.pool().submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        roMix(b, offset, r, n, null, cancelled);
+                    }
+                }));
+            }
+
+            try {
+                roMix(b, 0, r, n, progress, cancelled);
+            } catch (CancellationException error) {
+                cancelLanes(lanes, cancelled);
+                throw error;
+            }
+            awaitLanes(lanes, cancelled, caller);
+
+            byte[] key = PBKDF2.derive(password, b, 1, keyLength, null);
+            if (progress != null) {
+                progress.publish(100);
+            }
+            return key;
+        } finally {
+            java.util.Arrays.fill(b, (byte) 0);
+        }
+    }
+
+    private static void cancelLanes(List<Future<?>> lanes, AtomicBoolean cancelled) {
+        cancelled.set(true);
+        for (Future<?> lane : lanes) {
+            lane.cancel(true);
+        }
+    }
+
+    private static void awaitLanes(List<Future<?>> lanes, AtomicBoolean cancelled, Thread caller) {
+        for (Future<?> lane : lanes) {
+            try {
+                lane.get();
+            } catch (InterruptedException error) {
+                cancelLanes(lanes, cancelled);
+                caller.interrupt();
+                throw new CancellationException("Key derivation cancelled");
+            } catch (ExecutionException error) {
+                cancelLanes(lanes, cancelled);
+                if (error.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) error.getCause();
+                }
+                throw new IllegalStateException(error.getCause());
+            }
+        }
+    }
+
+    /*
+     * ROMix над b[offset .. offset + 128 * r) на месте. Прогресс публикует только линия с progress.
+     */
+    private static void roMix(byte[] b, int offset, int r, int n, Kdf.Progress progress,
+                              AtomicBoolean cancelled) {
+        int words = 32 * r;
+        int[] x = new int[words];
+        int[] y = new int[words];
+        int[] v = new int[words * n];
+        int[] t = new int[16];
+
+        for (int k = 0; k < words; k++) {
+            int i = offset + 4 * k;
+            x[k] = (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8
+                    | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+        }
+
+        try {
+            for (int i = 0; i < n; i++) {
+                if ((i & (CHECK_INTERVAL - 1)) == 0) {
+                    checkpoint(progress, cancelled, i, 2L * n);
+                }
+                System.arraycopy(x, 0, v, i * words, words);
+                blockMix(x, y, r, t);
+                int[] swap = x;
+                x = y;
+                y = swap;
+            }
+
+            for (int i = 0; i < n; i++) {
+                if ((i & (CHECK_INTERVAL - 1)) == 0) {
+                    checkpoint(progress, cancelled, n + i, 2L * n);
+                }
+                int j = (x[(2 * r - 1) * 16] & (n - 1)) * words;
+                for (int k = 0; k < words; k++) {
+                    x[k] ^= v[j + k];
+                }
+                blockMix(x, y, r, t);
+                int[] swap = x;
+                x = y;
+                y = swap;
+            }
+
+            for (int k = 0; k < words; k++) {
+                int i = offset + 4 * k;
+                b[i]     = (byte) x[k];
+                b[i + 1] = (byte) (x[k] >>> 8);
+                b[i + 2] = (byte) (x[k] >>> 16);
+                b[i + 3] = (byte) (x[k] >>> 24);
+            }
+        } finally {
+            java.util.Arrays.fill(v, 0);
+            java.util.Arrays.fill(x, 0);
+            java.util.Arrays.fill(y, 0);
+            java.util.Arrays.fill(t, 0);
+        }
+    }
+
+    private static void checkpoint(Kdf.Progress progress, AtomicBoolean cancelled,
+                                   long done, long total) {
+        if (cancelled.get() || Thread.currentThread().isInterrupted()
+                || (progress != null && progress.isCancelled())) {
+            throw new CancellationException("Key derivation cancelled");
+        }
+        if (progress != null) {
+            progress.publish((int) (done * 100 / total));
+        }
+    }
+
+    /*
+     * BlockMix_salsa20/8: out = (Y0, Y2, ..., Y(2r-2), Y1, Y3, ..., Y(2r-1)).
+     */
+    private static void blockMix(int[] in, int[] out, int r, int[] t) {
+        System.arraycopy(in, (2 * r - 1) * 16, t, 0, 16);
+        for (int i = 0; i < 2 * r; i++) {
+            int from = i * 16;
+            for (int k = 0; k < 16; k++) {
+                t[k] ^= in[from + k];
+            }
+            salsa8(t);
+            System.arraycopy(t, 0, out, ((i & 1) * r + (i >>> 1)) * 16, 16);
+        }
+    }
+
+    private static void salsa8(int[] b) {
+        int x0 = b[0], x1 = b[1], x2 = b[2], x3 = b[3];
+        int x4 = b[4], x5 = b[5], x6 = b[6], x7 = b[7];
+        int x8 = b[8], x9 = b[9], x10 = b[10], x11 = b[11];
+        int x12 = b[12], x13 = b[13], x14 = b[14], x15 = b[15];
+
+        for (int i = 0; i < 8; i += 2) {
+            // Столбцы
+            x4 ^= Integer.rotateLeft(x0 + x12, 7);   x8 ^= Integer.rotateLeft(x4 + x0, 9);
+            x12 ^= Integer.rotateLeft(x8 + x4, 13);  x0 ^= Integer.rotateLeft(x12 + x8, 18);
+            x9 ^= Integer.rotateLeft(x5 + x1, 7);    x13 ^= Integer.rotateLeft(x9 + x5, 9);
+            x1 ^= Integer.rotateLeft(x13 + x9, 13);  x5 ^= Integer.rotateLeft(x1 + x13, 18);
+            x14 ^= Integer.rotateLeft(x10 + x6, 7);  x2 ^= Integer.rotateLeft(x14 + x10, 9);
+            x6 ^= Integer.rotateLeft(x2 + x14, 13);  x10 ^= Integer.rotateLeft(x6 + x2, 18);
+            x3 ^= Integer.rotateLeft(x15 + x11, 7);  x7 ^= Integer.rotateLeft(x3 + x15, 9);
+            x11 ^= Integer.rotateLeft(x7 + x3, 13);  x15 ^= Integer.rotateLeft(x11 + x7, 18);
+            // Строки
+            x1 ^= Integer.rotateLeft(x0 + x3, 7);    x2 ^= Integer.rotateLeft(x1 + x0, 9);
+            x3 ^= Integer.rotateLeft(x2 + x1, 13);   x0 ^= Integer.rotateLeft(x3 + x2, 18);
+            x6 ^= Integer.rotateLeft(x5 + x4, 7);    x7 ^= Integer.rotateLeft(x6 + x5, 9);
+            x4 ^= Integer.rotateLeft(x7 + x6, 13);   x5 ^= Integer.rotateLeft(x4 + x7, 18);
+            x11 ^= Integer.rotateLeft(x10 + x9, 7);  x8 ^= Integer.rotateLeft(x11 + x10, 9);
+            x9 ^= Integer.rotateLeft(x8 + x11, 13);  x10 ^= Integer.rotateLeft(x9 + x8, 18);
+            x12 ^= Integer.rotateLeft(x15 + x14, 7); x13 ^= Integer.rotateLeft(x12 + x15, 9);
+            x14 ^= Integer.rotateLeft(x13 + x12, 13); x15 ^= Integer.rotateLeft(x14 + x13, 18);
+        }
+
+        b[0] += x0;   b[1] += x1;   b[2] += x2;   b[3] += x3;
+        b[4] += x4;   b[5] += x5;   b[6] += x6;   b[7] += x7;
+        b[8] += x8;   b[9] += x9;   b[10] += x10; b[11] += x11;
+        b[12] += x12; b[13] += x13; b[14] += x14; b[15] += x15;
+    }
+}
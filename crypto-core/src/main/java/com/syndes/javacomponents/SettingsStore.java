@@ -0,0 +1,350 @@
+package com.syndes.javacomponents;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * SettingsStore — маленькое хранилище настроек в одном бинарном файле вместо XML SharedPreferences.
+ *
+ * Формат (big-endian):
+ *   magic(4) | version(1) | count(2) | записи | crc32(4)
+ *   запись: key length(1) | key (UTF-8) | type(1) | value
+ *   value: int — 4 байта; string и bytes — length(4) | данные
+ *
+ * Файл читается целиком одним read при открытии; дальше значения берутся из памяти.
+ * Запись: новый файл рядом (*.tmp) через FileChannel, fsync, затем атомарный rename,
+ * так что на диске всегда либо старая, либо новая версия целиком. Прежняя исправная версия
+ * перед rename становится резервной копией (*.bak); если основной файл пропал или повреждён,
+ * {@link #open(File)} читает её, а {@link #isRestored()} сообщает об этом. Значения в памяти —
+ * неизменяемая карта, которая заменяется при commit: чтение без блокировок.
+ * Как и в SharedPreferences, изменения видны сразу, даже если запись не удалась:
+ * файл каждый раз пишется целиком, так что следующий commit сохранит и их.
+ *
+ * Байтовые значения хранятся как есть — например, контейнер {@link Envelope} без {@link Armor}.
+ */
+public final class SettingsStore {
+
+    private static final int MAGIC = 0x53544353; // "STCS"
+    private static final byte VERSION = 1;
+
+    private static final byte TYPE_INT = 1;
+    private static final byte TYPE_STRING = 2;
+    private static final byte TYPE_BYTES = 3;
+
+    // Настройки — сотни байт; больший файл — явно не наш.
+    private static final int MAX_FILE_BYTES = 1024 * 1024;
+    private static final int CRC_BYTES = 4;
+
+    private final File file;
+    private final File temp;
+    private final File backup;
+    private volatile Map<String, Object> values;
+    // Основной файл прочитан или записан нами: его можно сделать резервной копией.
+    // Повреждённый файл копией не становится, чтобы не затереть исправную.
+    private boolean fileIsGood;
+    private final boolean restored;
+
+    private SettingsStore(File file, Map<String, Object> values, boolean fileIsGood, boolean restored) {
+        this.file = file;
+        this.temp = new File(file.getPath() + ".tmp");
+        this.backup = new File(file.getPath() + ".bak");
+        this.values = values;
+        this.fileIsGood = fileIsGood;
+        this.restored = restored;
+    }
+
+    /**
+     * Открывает хранилище; если нет ни файла, ни резервной копии — пустое.
+     * Повреждённый файл заменяется резервной копией, см. {@link #isRestored()}.
+     * @throws IOException если не читаются ни файл, ни резервная копия
+     */
+    public static SettingsStore open(File file) throws IOException {
+        File backup = new File(file.getPath() + ".bak");
+        if (!file.exists()) {
+            // Запись прервалась между двумя rename: последняя завершённая версия — копия.
+            if (!backup.exists()) {
+                return empty(file);
+            }
+            return new SettingsStore(file, Collections.unmodifiableMap(read(backup)), false, false);
+        }
+
+        try {
+            return new SettingsStore(file, Collections.unmodifiableMap(read(file)), true, false);
+        } catch (IOException error) {
+            if (!backup.exists()) {
+                throw error;
+            }
+            try {
+                return new SettingsStore(file, Collections.unmodifiableMap(read(backup)), false, true);
+            } catch (IOException backupError) {
+                error.addSuppressed(backupError);
+                throw error;
+            }
+        }
+    }
+
+    /**
+     * Пустое хранилище; файл будет создан при первой записи.
+     * Существующий файл при этом не станет резервной копией.
+     */
+    public static SettingsStore empty(File file) {
+        return new SettingsStore(file, Collections.<String, Object>emptyMap(), false, false);
+    }
+
+    public boolean exists() {
+        return file.exists() || backup.exists();
+    }
+
+    /**
+     * @return true, если основной файл был повреждён и значения взяты из резервной копии:
+     * изменения после её создания потеряны
+     */
+    public boolean isRestored() {
+        return restored;
+    }
+
+    public boolean contains(String key) {
+        return values.containsKey(key);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        Object value = values.get(key);
+        return value instanceof Integer ? (Integer) value : defaultValue;
+    }
+
+    public String getString(String key, String defaultValue) {
+        Object value = values.get(key);
+        return value instanceof String ? (String) value : defaultValue;
+    }
+
+    /** @return копия значения или null */
+    public byte[] getBytes(String key) {
+        Object value = values.get(key);
+        return value instanceof byte[] ? ((byte[]) value).clone() : null;
+    }
+
+    public Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * Набор изменений, записываемый одним файлом в {@link #commit()}.
+     */
+    public final class Editor {
+        private final Map<String, Object> changes = new LinkedHashMap<>();
+        private final Set<String> removals = new HashSet<>();
+
+        private Editor() {
+        }
+
+        public Editor putInt(String key, int value) {
+            return put(key, value);
+        }
+
+        public Editor putString(String key, String value) {
+            return put(key, value);
+        }
+
+        public Editor putBytes(String key, byte[] value) {
+            return put(key, value.clone());
+        }
+
+        public Editor remove(String key) {
+            changes.remove(key);
+            removals.add(key);
+            return this;
+        }
+
+        /**
+         * Применяет изменения и записывает файл.
+         * @throws IOException если файл не записан; изменения в памяти при этом остаются
+         */
+        public void commit() throws IOException {
+            SettingsStore.this.commit(changes, removals);
+        }
+
+        private Editor put(String key, Object value) {
+            if (key.getBytes(StandardCharsets.UTF_8).length > 255 || value == null) {
+                throw new IllegalArgumentException("Invalid settings key or value");
+            }
+            removals.remove(key);
+            changes.put(key, value);
+            return this;
+        }
+    }
+
+    private synchronized void commit(Map<String, Object> changes, Set<String> removals)
+            throws IOException {
+        Map<String, Object> next = new LinkedHashMap<>(values);
+        next.keySet().removeAll(removals);
+        next.putAll(changes);
+
+        values = Collections.unmodifiableMap(next);
+        write(next);
+    }
+
+    private void write(Map<String, Object> entries) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedLength(entries));
+        buffer.putInt(MAGIC);
+        buffer.put(VERSION);
+        buffer.putShort((short) entries.size());
+        for (Map.Entry<String, Object> entry : entries.entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            buffer.put((byte) key.length);
+            buffer.put(key);
+
+            Object value = entry.getValue();
+            if (value instanceof Integer) {
+                buffer.put(TYPE_INT);
+                buffer.putInt((Integer) value);
+            } else if (value instanceof String) {
+                byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+                buffer.put(TYPE_STRING);
+                buffer.putInt(bytes.length);
+                buffer.put(bytes);
+            } else {
+                byte[] bytes = (byte[]) value;
+                buffer.put(TYPE_BYTES);
+                buffer.putInt(bytes.length);
+                buffer.put(bytes);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Couldn't create " + parent);
+        }
+
+        FileOutputStream output = new FileOutputStream(temp);
+        try {
+            FileChannel channel = output.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } finally {
+            output.close();
+        }
+
+        if (fileIsGood) {
+            // Если следующий rename не пройдёт, open возьмёт эту копию.
+            backup.delete();
+            if (!file.renameTo(backup)) {
+                temp.delete();
+                throw new IOException("Couldn't back up " + file);
+            }
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Couldn't replace " + file);
+        }
+        fileIsGood = true;
+    }
+
+    private static int encodedLength(Map<String, Object> entries) {
+        if (entries.size() > 0xFFFF) {
+            throw new IllegalArgumentException("Too many settings");
+        }
+        int length = 4 + 1 + 2 + CRC_BYTES;
+        for (Map.Entry<String, Object> entry : entries.entrySet()) {
+            length += 1 + entry.getKey().getBytes(StandardCharsets.UTF_8).length + 1;
+            Object value = entry.getValue();
+            if (value instanceof Integer) {
+                length += 4;
+            } else if (value instanceof String) {
+                length += 4 + ((String) value).getBytes(StandardCharsets.UTF_8).length;
+            } else {
+                length += 4 + ((byte[]) value).length;
+            }
+        }
+        return length;
+    }
+
+    private static Map<String, Object> read(File file) throws IOException {
+        ByteBuffer buffer;
+        FileInputStream input;
+        try {
+            input = new FileInputStream(file);
+        } catch (FileNotFoundException error) {
+            return new LinkedHashMap<>();
+        }
+        try {
+            FileChannel channel = input.getChannel();
+            long size = channel.size();
+            if (size < 4 + 1 + 2 + CRC_BYTES || size > MAX_FILE_BYTES) {
+                throw new IOException("Corrupted settings file");
+            }
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Читаем до конца: файл маленький, обычно хватает одного read.
+            }
+        } finally {
+            input.close();
+        }
+        if (buffer.hasRemaining()) {
+            throw new IOException("Corrupted settings file");
+        }
+
+        int bodyLength = buffer.capacity() - CRC_BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, bodyLength);
+        if ((int) crc.getValue() != buffer.getInt(bodyLength)) {
+            throw new IOException("Corrupted settings file");
+        }
+
+        buffer.flip();
+        buffer.limit(bodyLength);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Corrupted settings file");
+            }
+            if (buffer.get() != VERSION) {
+                throw new IOException("Unsupported settings file version");
+            }
+
+            int count = buffer.getShort() & 0xFFFF;
+            Map<String, Object> entries = new LinkedHashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                byte[] key = new byte[buffer.get() & 0xFF];
+                buffer.get(key);
+
+                byte type = buffer.get();
+                Object value;
+                if (type == TYPE_INT) {
+                    value = buffer.getInt();
+                } else if (type == TYPE_STRING || type == TYPE_BYTES) {
+                    int length = buffer.getInt();
+                    if (length < 0 || length > buffer.remaining()) {
+                        throw new IOException("Corrupted settings file");
+                    }
+                    byte[] bytes = new byte[length];
+                    buffer.get(bytes);
+                    value = type == TYPE_STRING ? new String(bytes, StandardCharsets.UTF_8) : bytes;
+                } else {
+                    throw new IOException("Corrupted settings file");
+                }
+                entries.put(new String(key, StandardCharsets.UTF_8), value);
+            }
+            return entries;
+        } catch (BufferUnderflowException error) {
+            throw new IOException("Corrupted settings file", error);
+        }
+    }
+}
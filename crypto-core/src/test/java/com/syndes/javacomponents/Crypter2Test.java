@@ -0,0 +1,122 @@
+package com.syndes.javacomponents;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * Табличный кодек ASCII ↔ кандзи и плотный 14-битный кодек байтов.
+ */
+public class Crypter2Test {
+
+    private static String printableAscii() {
+        StringBuilder text = new StringBuilder();
+        for (char c = 32; c <= 126; c++) {
+            text.append(c);
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void roundTripsAllPrintableAscii() {
+        String ascii = printableAscii();
+        String kanji = Crypter2.encrypt(null, ascii);
+        assertEquals(ascii.length(), kanji.length());
+        assertEquals(ascii, Crypter2.decrypt(null, kanji));
+    }
+
+    @Test
+    public void decodesOnlyTableKanji() {
+        int decodable = 0;
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            String input = String.valueOf((char) c);
+            try {
+                String ascii = Crypter2.decrypt(null, input);
+                assertEquals(input, Crypter2.encrypt(null, ascii));
+                decodable++;
+            } catch (IllegalArgumentException expected) {
+                // не из таблицы
+            }
+        }
+        assertEquals(95, decodable);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNul() {
+        Crypter2.decrypt(null, "\u0000");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonAscii() {
+        Crypter2.encrypt(null, "tab\there");
+    }
+
+    @Test
+    public void adaptersMatchStringApi() throws Exception {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 10000) {
+            text.append(printableAscii());
+        }
+
+        StringWriter encoded = new StringWriter();
+        Writer writer = Crypter2.encodingWriter(encoded);
+        writer.write(text.toString());
+        writer.close();
+        assertEquals(Crypter2.encrypt(null, text.toString()), encoded.toString());
+
+        Reader reader = Crypter2.decodingReader(new StringReader(encoded.toString()));
+        StringBuilder decoded = new StringBuilder();
+        char[] buffer = new char[777];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            decoded.append(buffer, 0, read);
+        }
+        assertEquals(text.toString(), decoded.toString());
+    }
+
+    @Test
+    public void roundTripsDenseForEveryLength() {
+        for (int length = 0; length <= 64; length++) {
+            byte[] data = CrypterTest.bytes(length);
+            String dense = Crypter2.encodeBytes(data);
+            assertTrue(Crypter2.isDense(dense));
+            assertEquals("length " + length, Crypter2.denseLength(length), dense.length());
+            assertArrayEquals("length " + length, data, Crypter2.decodeBytes(dense));
+        }
+    }
+
+    @Test
+    public void roundTripsDenseExtremes() {
+        byte[] zeros = new byte[1000];
+        byte[] ones = new byte[1000];
+        java.util.Arrays.fill(ones, (byte) 0xFF);
+        assertArrayEquals(zeros, Crypter2.decodeBytes(Crypter2.encodeBytes(zeros)));
+        assertArrayEquals(ones, Crypter2.decodeBytes(Crypter2.encodeBytes(ones)));
+    }
+
+    @Test
+    public void tableOutputIsNotDense() {
+        assertFalse(Crypter2.isDense(Crypter2.encrypt(null, printableAscii())));
+        assertFalse(Crypter2.isDense(""));
+    }
+
+    @Test
+    public void rejectsForeignCharsInDense() {
+        String dense = Crypter2.encodeBytes(CrypterTest.bytes(20));
+        try {
+            Crypter2.decodeBytes(dense.substring(0, 3) + "a" + dense.substring(4));
+            fail("Foreign character accepted");
+        } catch (IllegalArgumentException expected) {
+            // ок
+        }
+    }
+}
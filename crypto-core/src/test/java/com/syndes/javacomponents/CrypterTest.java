@@ -0,0 +1,324 @@
+package com.syndes.javacomponents;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import javax.crypto.AEADBadTagException;
+
+/**
+ * Форматы Crypter: старый v1, контейнер v2, пакет, несколько получателей и поток.
+ * Для скорости новые шифротексты создаются с минимальным числом итераций.
+ */
+public class CrypterTest {
+
+    // Создан PBKDF2WithHmacSHA256 (75000 итераций) и AES-GCM из JCA, как это делал Crypter v1.
+    static final String V1_PASSWORD = "legacy pass";
+    static final String V1_PLAINTEXT = "Legacy v1 text, ünïcode ✓";
+    static final String V1_CIPHERTEXT = "v1:AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8=:oKGio6Slpqeoqaqr:"
+            + "/XhFh6tVB2I0KC80kh/+FsEvVaTYAFDZ45gH1Qc8YXUy4aQliPhiSdGn/kYa";
+
+    // Контейнер v2 (PBKDF2, 10000 итераций): формат не должен меняться.
+    private static final String V2_PASSWORD = "envelope pass";
+    private static final String V2_PLAINTEXT = "Fixed v2 envelope é中";
+    private static final String V2_CIPHERTEXT = "xQIBAAAnEKyySzW+GbFB7ylsXrE36gH9kptlsfxeSWLZz3UOjsE/F3b9aQAA"
+            + "AAAAAAAALxu3Xyzz56Y438bhTtuM+vetc/cg3PmOE769Ce1sS8k9eMga/xch";
+
+    @Before
+    public void setUp() {
+        Crypter.setIterations(Crypter.MIN_ITERATIONS);
+        Crypter.setScryptCost(0);
+        Crypter.setKeyCacheCapacity(0);
+    }
+
+    @After
+    public void tearDown() {
+        Crypter.setIterations(Crypter.PBKDF2_ITERATIONS);
+        Crypter.setScryptCost(0);
+    }
+
+    @Test
+    public void decryptsLegacyV1() throws Exception {
+        assertEquals(V1_PLAINTEXT, Crypter.decrypt(V1_PASSWORD, V1_CIPHERTEXT));
+    }
+
+    @Test(expected = AEADBadTagException.class)
+    public void rejectsLegacyV1WithWrongPassword() throws Exception {
+        Crypter.decrypt("wrong", V1_CIPHERTEXT);
+    }
+
+    @Test
+    public void decryptsStoredV2() throws Exception {
+        assertEquals(V2_PLAINTEXT, Crypter.decrypt(V2_PASSWORD, V2_CIPHERTEXT));
+    }
+
+    @Test
+    public void roundTripsV2() throws Exception {
+        String ciphertext = Crypter.encrypt("secret", V2_PLAINTEXT);
+        assertTrue(Envelope.isEnvelope(Armor.decode(ciphertext)));
+        assertEquals(V2_PLAINTEXT, Crypter.decrypt("secret", ciphertext));
+    }
+
+    @Test
+    public void roundTripsV2WithScrypt() throws Exception {
+        Crypter.setScryptCost(Scrypt.cost(Scrypt.MIN_LOG2_N, 8, 2));
+        byte[] envelope = Crypter.encryptToEnvelope("secret".toCharArray(), bytes(1000));
+        assertEquals(Envelope.KDF_SCRYPT, Envelope.decode(envelope).kdfId());
+        assertArrayEquals(bytes(1000), Crypter.decryptEnvelope("secret".toCharArray(), envelope));
+    }
+
+    @Test
+    public void wipesPassword() throws Exception {
+        char[] password = "secret".toCharArray();
+        Crypter.encrypt(password, "text");
+        assertArrayEquals(new char[6], password);
+    }
+
+    @Test
+    public void rejectsTamperedV2() throws Exception {
+        byte[] envelope = Crypter.encryptToEnvelope("secret".toCharArray(), bytes(100));
+        // Заголовок (кроме параметров KDF, которые проверяются до расшифровки) и шифротекст.
+        for (int position : new int[]{10, Envelope.HEADER_BYTES - 1, Envelope.HEADER_BYTES, envelope.length - 1}) {
+            byte[] tampered = envelope.clone();
+            tampered[position] ^= 1;
+            try {
+                Crypter.decryptEnvelope("secret".toCharArray(), tampered);
+                fail("Tampered byte " + position + " accepted");
+            } catch (AEADBadTagException expected) {
+                // ок
+            }
+        }
+    }
+
+    @Test
+    public void reportsKdfProgress() throws Exception {
+        final List<Integer> published = new ArrayList<>();
+        Kdf.Progress progress = new Kdf.Progress() {
+            @Override
+            public void publish(int percent) {
+                published.add(percent);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        };
+        String ciphertext = Crypter.encrypt("secret".toCharArray(), "text", progress);
+        assertEquals(100, (int) published.get(published.size() - 1));
+
+        published.clear();
+        assertEquals("text", Crypter.decrypt("secret".toCharArray(), ciphertext, progress));
+        assertEquals(100, (int) published.get(published.size() - 1));
+
+        // Старый формат идёт через отдельный вывод ключа — ход тот же.
+        published.clear();
+        assertEquals(V1_PLAINTEXT, Crypter.decrypt(V1_PASSWORD.toCharArray(), V1_CIPHERTEXT, progress));
+        assertEquals(100, (int) published.get(published.size() - 1));
+    }
+
+    @Test
+    public void stopsWhenCancelled() throws Exception {
+        byte[] envelope = Crypter.encryptToEnvelope("secret".toCharArray(), bytes(10));
+        char[] password = "secret".toCharArray();
+        try {
+            Crypter.decryptEnvelope(password, envelope, new Kdf.Progress() {
+                @Override
+                public void publish(int percent) {
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return true;
+                }
+            });
+            fail("Not cancelled");
+        } catch (CancellationException expected) {
+            // Пароль затирается и при отмене.
+            assertArrayEquals(new char[6], password);
+        }
+    }
+
+    @Test(expected = AEADBadTagException.class)
+    public void rejectsV2WithWrongPassword() throws Exception {
+        Crypter.decrypt("wrong", Crypter.encrypt("secret", "text"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsForgedIterationCount() throws Exception {
+        byte[] envelope = Crypter.encryptToEnvelope("secret".toCharArray(), bytes(10));
+        envelope[3] = 0x7F;
+        Crypter.decryptEnvelope("secret".toCharArray(), envelope);
+    }
+
+    @Test
+    public void roundTripsBatch() throws Exception {
+        List<String> records = Arrays.asList("first", "", "третья", "4");
+        String batch = Crypter.encryptBatch("secret".toCharArray(), records);
+        assertEquals(records, Crypter.decryptBatch("secret".toCharArray(), batch));
+        assertEquals(new ArrayList<String>(),
+                Crypter.decryptBatch("secret".toCharArray(),
+                        Crypter.encryptBatch("secret".toCharArray(), new ArrayList<String>())));
+    }
+
+    @Test
+    public void rejectsTamperedBatch() throws Exception {
+        byte[] batch = encryptBatch("first", "second");
+        int record = Crypter.BATCH_HEADER_BYTES;
+        // Соль, nonce записи, её длина, шифротекст и тег последней записи.
+        for (int position : new int[]{7, record, record + Crypter.BATCH_NONCE_BYTES + 3,
+                record + Crypter.BATCH_NONCE_BYTES + 4, batch.length - 1}) {
+            byte[] tampered = batch.clone();
+            tampered[position] ^= 1;
+            assertBatchRejected("Tampered byte " + position, tampered);
+        }
+    }
+
+    @Test
+    public void rejectsReorderedBatch() throws Exception {
+        // Записи одной длины: переставленный пакет совпадает по разметке, ловит только AAD.
+        byte[] batch = encryptBatch("aaaa", "bbbb");
+        int length = (batch.length - Crypter.BATCH_HEADER_BYTES) / 2;
+        byte[] reordered = batch.clone();
+        System.arraycopy(batch, Crypter.BATCH_HEADER_BYTES, reordered,
+                Crypter.BATCH_HEADER_BYTES + length, length);
+        System.arraycopy(batch, Crypter.BATCH_HEADER_BYTES + length, reordered,
+                Crypter.BATCH_HEADER_BYTES, length);
+        assertBatchRejected("Reordered batch", reordered);
+    }
+
+    @Test
+    public void rejectsTruncatedBatch() throws Exception {
+        // Записи длиннее минимальной, чтобы обрезка прошла проверку числа записей по размеру.
+        String record = new String(new char[100]).replace('\0', 'a');
+        byte[] batch = encryptBatch(record, record);
+        int length = (batch.length - Crypter.BATCH_HEADER_BYTES) / 2;
+        byte[] shorter = Arrays.copyOf(batch, batch.length - length);
+        assertBatchRejected("Dropped record", shorter);
+
+        // Число записей входит в AAD: поправить его недостаточно.
+        byte[] recounted = shorter.clone();
+        recounted[Crypter.BATCH_HEADER_BYTES - 1] = 1;
+        assertBatchRejected("Dropped and recounted record", recounted);
+
+        assertBatchRejected("Cut tag", Arrays.copyOf(batch, batch.length - 1));
+        assertBatchRejected("Trailing byte", Arrays.copyOf(batch, batch.length + 1));
+    }
+
+    @Test
+    public void roundTripsRecipients() throws Exception {
+        String ciphertext = Crypter.encryptForRecipients(passwords("alice", "bob", "carol"), V2_PLAINTEXT);
+        for (String password : new String[]{"alice", "bob", "carol"}) {
+            assertEquals(V2_PLAINTEXT, Crypter.decrypt(password, ciphertext));
+        }
+    }
+
+    @Test(expected = AEADBadTagException.class)
+    public void rejectsRecipientsWithUnknownPassword() throws Exception {
+        Crypter.decrypt("eve", Crypter.encryptForRecipients(passwords("alice", "bob"), "text"));
+    }
+
+    @Test
+    public void rejectsTamperedRecipientTable() throws Exception {
+        byte[] container = Crypter.encryptForRecipients(passwords("alice", "bob"), bytes(100));
+        // Обёртка ключа для alice: bob её не использует, но она входит в AAD текста.
+        int alice = Crypter.RECIPIENTS_HEADER_BYTES + 2;
+        for (int position : new int[]{alice, container.length - 1}) {
+            byte[] tampered = container.clone();
+            tampered[position] ^= 1;
+            try {
+                Crypter.decryptEnvelope("bob".toCharArray(), tampered);
+                fail("Tampered byte " + position + " accepted");
+            } catch (AEADBadTagException expected) {
+                // ок
+            }
+        }
+    }
+
+    @Test
+    public void roundTripsStream() throws Exception {
+        int segment = Crypter.STREAM_SEGMENT_BYTES;
+        for (int length : new int[]{0, 1, segment - 1, segment, segment + 1, 3 * segment + 17}) {
+            byte[] plain = bytes(length);
+            byte[] encrypted = encryptStream(plain);
+            assertArrayEquals("length " + length, plain, decryptStream(encrypted));
+            // Тот же формат читает ParallelCrypter, и наоборот.
+            assertArrayEquals("length " + length, plain,
+                    ParallelCrypter.decrypt(encrypted, "secret".toCharArray()));
+            assertArrayEquals("length " + length, plain,
+                    decryptStream(ParallelCrypter.encrypt(plain, "secret".toCharArray())));
+        }
+    }
+
+    @Test
+    public void rejectsTruncatedStream() throws Exception {
+        byte[] encrypted = encryptStream(bytes(2 * Crypter.STREAM_SEGMENT_BYTES + 5));
+        // Ровно по границе сегмента: без признака последнего сегмента обрезка была бы незаметна.
+        int cut = Crypter.STREAM_HEADER_BYTES + Crypter.STREAM_SEGMENT_BYTES + Crypter.TAG_LENGTH_BYTES;
+        try {
+            decryptStream(Arrays.copyOf(encrypted, cut));
+            fail("Truncated stream accepted");
+        } catch (AEADBadTagException expected) {
+            // ок
+        }
+    }
+
+    @Test(expected = AEADBadTagException.class)
+    public void rejectsTamperedStream() throws Exception {
+        byte[] encrypted = encryptStream(bytes(1000));
+        encrypted[Crypter.STREAM_HEADER_BYTES + 10] ^= 1;
+        decryptStream(encrypted);
+    }
+
+    static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static List<char[]> passwords(String... passwords) {
+        List<char[]> list = new ArrayList<>();
+        for (String password : passwords) {
+            list.add(password.toCharArray());
+        }
+        return list;
+    }
+
+    private static byte[] encryptBatch(String... records) throws Exception {
+        return Armor.decode(Crypter.encryptBatch("secret".toCharArray(), Arrays.asList(records)));
+    }
+
+    private static void assertBatchRejected(String message, byte[] batch) throws Exception {
+        try {
+            Crypter.decryptBatch("secret".toCharArray(), Armor.encode(batch));
+            fail(message + " accepted");
+        } catch (AEADBadTagException expected) {
+            // ок
+        }
+    }
+
+    private static byte[] encryptStream(byte[] plain) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Crypter.encryptStream(new ByteArrayInputStream(plain), out, "secret".toCharArray());
+        return out.toByteArray();
+    }
+
+    private static byte[] decryptStream(byte[] encrypted) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Crypter.decryptStream(new ByteArrayInputStream(encrypted), out, "secret".toCharArray());
+        return out.toByteArray();
+    }
+}
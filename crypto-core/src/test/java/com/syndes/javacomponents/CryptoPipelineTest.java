@@ -0,0 +1,111 @@
+package com.syndes.javacomponents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Каскад Crypter → Crypter2: новые плотные записи и все прежние форматы на входе расшифровки.
+ */
+public class CryptoPipelineTest {
+
+    private final CryptoPipeline pipeline = new CryptoPipeline();
+
+    @Before
+    public void setUp() {
+        Crypter.setIterations(Crypter.MIN_ITERATIONS);
+    }
+
+    @After
+    public void tearDown() {
+        Crypter.setIterations(Crypter.PBKDF2_ITERATIONS);
+    }
+
+    @Test
+    public void roundTripsDense() throws Exception {
+        String text = "Привет, 世界!";
+        String ciphertext = pipeline.encrypt("secret".toCharArray(), text);
+        assertTrue(Crypter2.isDense(ciphertext));
+        assertEquals(text, pipeline.decrypt("secret".toCharArray(), ciphertext));
+    }
+
+    @Test
+    public void roundTripsLargeText() throws Exception {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 2 * 1024 * 1024) {
+            text.append("line ").append(text.length()).append('\n');
+        }
+        String ciphertext = pipeline.encrypt("secret".toCharArray(), text.toString());
+        assertEquals(text.toString(), pipeline.decrypt("secret".toCharArray(), ciphertext));
+        // Буфер затёрт и переиспользуется; короткий текст после длинного тоже проходит.
+        assertEquals("short", pipeline.decrypt("secret".toCharArray(),
+                pipeline.encrypt("secret".toCharArray(), "short")));
+    }
+
+    @Test
+    public void reportsProgressAndStopsWhenCancelled() throws Exception {
+        final List<Integer> published = new ArrayList<>();
+        final boolean[] cancelled = {false};
+        Kdf.Progress progress = new Kdf.Progress() {
+            @Override
+            public void publish(int percent) {
+                published.add(percent);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return cancelled[0];
+            }
+        };
+
+        String ciphertext = pipeline.encrypt("secret".toCharArray(), "text", progress);
+        assertEquals(100, (int) published.get(published.size() - 1));
+        published.clear();
+        assertEquals("text", pipeline.decrypt("secret".toCharArray(), ciphertext, progress));
+        assertEquals(100, (int) published.get(published.size() - 1));
+
+        cancelled[0] = true;
+        try {
+            pipeline.decrypt("secret".toCharArray(), ciphertext, progress);
+            fail("Not cancelled");
+        } catch (CancellationException expected) {
+            // ок
+        }
+        // Буфер после отмены освобождён: следующий вызов работает.
+        assertEquals("text", pipeline.decrypt("secret".toCharArray(), ciphertext));
+    }
+
+    @Test
+    public void decryptsLegacyKanjiV1() throws Exception {
+        String kanji = Crypter2.encrypt(null, CrypterTest.V1_CIPHERTEXT);
+        assertEquals(CrypterTest.V1_PLAINTEXT,
+                pipeline.decrypt(CrypterTest.V1_PASSWORD.toCharArray(), kanji));
+    }
+
+    @Test
+    public void decryptsAsciiFormats() throws Exception {
+        assertEquals(CrypterTest.V1_PLAINTEXT,
+                pipeline.decrypt(CrypterTest.V1_PASSWORD.toCharArray(), CrypterTest.V1_CIPHERTEXT));
+        assertEquals("armored", pipeline.decrypt("secret".toCharArray(),
+                Crypter.encrypt("secret", "armored")));
+    }
+
+    @Test
+    public void decryptsDenseRecipients() throws Exception {
+        List<char[]> passwords = new ArrayList<>();
+        passwords.add("alice".toCharArray());
+        passwords.add("bob".toCharArray());
+        byte[] container = Crypter.encryptForRecipients(passwords,
+                "for both".getBytes(StandardCharsets.UTF_8));
+        assertEquals("for both", pipeline.decrypt("bob".toCharArray(), Crypter2.encodeBytes(container)));
+    }
+}
@@ -0,0 +1,58 @@
+package com.syndes.javacomponents;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+/**
+ * Контрольные значения RFC 5869, приложение A, случаи 1–3 (SHA-256).
+ */
+public class HkdfTest {
+
+    private static byte[] range(int from, int to) {
+        byte[] bytes = new byte[to - from + 1];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (from + i);
+        }
+        return bytes;
+    }
+
+    private static byte[] repeat(int value, int length) {
+        byte[] bytes = new byte[length];
+        java.util.Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+    @Test
+    public void matchesRfcCase1() throws Exception {
+        assertArrayEquals(ScryptTest.hex("3cb25f25faacd57a90434f64d0362f2a2d2d0a90cf1a5a4c5db0"
+                        + "2d56ecc4c5bf34007208d5b887185865"),
+                new Hkdf().derive(repeat(0x0b, 22), range(0x00, 0x0c), range(0xf0, 0xf9), 42));
+    }
+
+    // Длинные входы: соль и ключ длиннее блока, три блока на выходе.
+    @Test
+    public void matchesRfcCase2() throws Exception {
+        assertArrayEquals(ScryptTest.hex("b11e398dc80327a1c8e7f78c596a49344f012eda2d4efad8a050"
+                        + "cc4c19afa97c59045a99cac7827271cb41c65e590e09da3275600c2f09b836"
+                        + "7793a9aca3db71cc30c58179ec3e87c14c01d5c1f3434f1d87"),
+                new Hkdf().derive(range(0x00, 0x4f), range(0x60, 0xaf), range(0xb0, 0xff), 82));
+    }
+
+    // Пустые соль и info: соль по RFC — HashLen нулевых байтов.
+    @Test
+    public void matchesRfcCase3() throws Exception {
+        assertArrayEquals(ScryptTest.hex("8da4e775a563c18f715f802a063c5a31b8a11f5c5ee1879ec345"
+                        + "4e5f3c738d2d9d201395faa4b61a96c8"),
+                new Hkdf().derive(repeat(0x0b, 22), new byte[0], new byte[0], 42));
+    }
+
+    // Один экземпляр на серию вызовов, как в пакете: Mac переинициализируется без следов.
+    @Test
+    public void reusesInstance() throws Exception {
+        Hkdf hkdf = new Hkdf();
+        byte[] first = hkdf.derive(repeat(0x0b, 22), range(0x00, 0x0c), range(0xf0, 0xf9), 42);
+        hkdf.derive(range(0x00, 0x4f), range(0x60, 0xaf), range(0xb0, 0xff), 82);
+        assertArrayEquals(first, hkdf.derive(repeat(0x0b, 22), range(0x00, 0x0c), range(0xf0, 0xf9), 42));
+    }
+}
@@ -0,0 +1,190 @@
+package com.syndes.javacomponents;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LRU-кэш ключей: попадания и промахи, вытеснение с затиранием, clear и выключенный кэш.
+ */
+public class KeyCacheTest {
+
+    private final KeyCache cache = new KeyCache();
+
+    /**
+     * Вывод ключа, который считает вызовы и возвращает ключ, зависящий от соли.
+     */
+    private static final class CountingDerivation implements KeyCache.Derivation {
+        private final byte[] salt;
+        int calls = 0;
+
+        CountingDerivation(byte[] salt) {
+            this.salt = salt;
+        }
+
+        @Override
+        public byte[] derive() {
+            calls++;
+            return key(salt);
+        }
+    }
+
+    private static byte[] key(byte[] salt) {
+        byte[] key = new byte[32];
+        java.util.Arrays.fill(key, (byte) (salt[0] + 1));
+        return key;
+    }
+
+    private static byte[] salt(int value) {
+        return new byte[]{(byte) value, 1, 2, 3};
+    }
+
+    private byte[] get(String password, byte[] salt, KeyCache.Derivation derivation)
+            throws GeneralSecurityException {
+        return cache.get(password.toCharArray(), salt, Envelope.KDF_PBKDF2_HMAC_SHA256, 10000, derivation);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<byte[]> storedKeys() throws Exception {
+        Field field = KeyCache.class.getDeclaredField("entries");
+        field.setAccessible(true);
+        synchronized (cache) {
+            return new ArrayList<>(((Map<ByteBuffer, byte[]>) field.get(cache)).values());
+        }
+    }
+
+    @Test
+    public void countsHitsAndMisses() throws Exception {
+        cache.setCapacity(4);
+        CountingDerivation derivation = new CountingDerivation(salt(1));
+
+        byte[] first = get("secret", salt(1), derivation);
+        byte[] second = get("secret", salt(1), derivation);
+        assertArrayEquals(key(salt(1)), second);
+        // Копии: вызывающий код затирает свой ключ, не трогая кэш.
+        assertNotSame(first, second);
+        java.util.Arrays.fill(second, (byte) 0);
+        assertArrayEquals(key(salt(1)), get("secret", salt(1), derivation));
+
+        assertEquals(1, derivation.calls);
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.misses());
+
+        // Другой пароль, соль, KDF или стоимость — другой ключ.
+        get("other", salt(1), derivation);
+        cache.get("secret".toCharArray(), salt(1), Envelope.KDF_SCRYPT, 10000, derivation);
+        cache.get("secret".toCharArray(), salt(1), Envelope.KDF_PBKDF2_HMAC_SHA256, 20000, derivation);
+        assertEquals(4, derivation.calls);
+        assertEquals(4, cache.misses());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedAndWipesIt() throws Exception {
+        cache.setCapacity(2);
+        get("secret", salt(1), new CountingDerivation(salt(1)));
+        get("secret", salt(2), new CountingDerivation(salt(2)));
+        // Первый ключ использован последним — вытесняется второй.
+        get("secret", salt(1), new CountingDerivation(salt(1)));
+        byte[] evicted = null;
+        for (byte[] stored : storedKeys()) {
+            if (java.util.Arrays.equals(key(salt(2)), stored)) {
+                evicted = stored;
+            }
+        }
+
+        get("secret", salt(3), new CountingDerivation(salt(3)));
+
+        assertArrayEquals(new byte[32], evicted);
+        assertEquals(2, storedKeys().size());
+
+        CountingDerivation again = new CountingDerivation(salt(1));
+        get("secret", salt(1), again);
+        assertEquals(0, again.calls);
+        CountingDerivation evictedAgain = new CountingDerivation(salt(2));
+        get("secret", salt(2), evictedAgain);
+        assertEquals(1, evictedAgain.calls);
+    }
+
+    @Test
+    public void clearWipesKeysAndKeepsCounters() throws Exception {
+        cache.setCapacity(4);
+        get("secret", salt(1), new CountingDerivation(salt(1)));
+        get("secret", salt(1), new CountingDerivation(salt(1)));
+        List<byte[]> stored = storedKeys();
+
+        cache.clear();
+
+        assertArrayEquals(new byte[32], stored.get(0));
+        assertTrue(storedKeys().isEmpty());
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        CountingDerivation derivation = new CountingDerivation(salt(1));
+        get("secret", salt(1), derivation);
+        assertEquals(1, derivation.calls);
+    }
+
+    @Test
+    public void passesThroughWhenDisabled() throws Exception {
+        CountingDerivation derivation = new CountingDerivation(salt(1));
+        get("secret", salt(1), derivation);
+        get("secret", salt(1), derivation);
+        assertEquals(2, derivation.calls);
+        assertEquals(0, cache.hits());
+        assertEquals(0, cache.misses());
+        assertTrue(storedKeys().isEmpty());
+    }
+
+    // Выключенный кэш не держит блокировку во время вывода: два вывода идут одновременно.
+    @Test
+    public void derivesConcurrentlyWhenDisabled() throws Exception {
+        final CountDownLatch bothRunning = new CountDownLatch(2);
+        final KeyCache.Derivation waiting = new KeyCache.Derivation() {
+            @Override
+            public byte[] derive() {
+                bothRunning.countDown();
+                try {
+                    if (!bothRunning.await(10, TimeUnit.SECONDS)) {
+                        throw new IllegalStateException("Derivations ran one at a time");
+                    }
+                } catch (InterruptedException error) {
+                    throw new IllegalStateException(error);
+                }
+                return key(salt(1));
+            }
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<byte[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                futures.add(pool.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws Exception {
+                        return get("secret", salt(1), waiting);
+                    }
+                }));
+            }
+            for (Future<byte[]> future : futures) {
+                assertArrayEquals(key(salt(1)), future.get(20, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.syndes.javacomponents;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Pbkdf2 даёт те же байты, что PBKDF2WithHmacSHA256 из JCA, и соблюдает ход и отмену.
+ */
+public class Pbkdf2Test {
+
+    private final Pbkdf2 kdf = new Pbkdf2();
+
+    private static byte[] jca(char[] password, byte[] salt, int iterations, int keyLength) throws Exception {
+        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        return factory.generateSecret(new PBEKeySpec(password, salt, iterations, keyLength * 8)).getEncoded();
+    }
+
+    @Test
+    public void matchesJcaOnRandomInputs() throws Exception {
+        Random random = new Random(12);
+        // ASCII, кириллица, BMP-иероглифы и суррогатные пары (4 байта UTF-8).
+        String alphabet = "abcXYZ019 !~жЁ中文😀";
+        for (int round = 0; round < 200; round++) {
+            // До 100 символов: пароли длиннее блока HMAC (64 байта) сначала хэшируются.
+            StringBuilder password = new StringBuilder();
+            for (int i = 1 + random.nextInt(100); i > 0; i--) {
+                int c = random.nextInt(alphabet.length() - 1);
+                password.append(alphabet.charAt(c));
+                if (Character.isHighSurrogate(alphabet.charAt(c))) {
+                    password.append(alphabet.charAt(c + 1));
+                }
+            }
+            byte[] salt = new byte[1 + random.nextInt(80)];
+            random.nextBytes(salt);
+            int iterations = 1 + random.nextInt(2000);
+            int keyLength = 1 + random.nextInt(100);
+
+            char[] chars = password.toString().toCharArray();
+            assertArrayEquals("round " + round, jca(chars, salt, iterations, keyLength),
+                    kdf.derive(chars, salt, iterations, keyLength, null));
+        }
+    }
+
+    @Test
+    public void matchesJcaAtCipherParameters() throws Exception {
+        char[] password = "correct horse battery staple".toCharArray();
+        byte[] salt = CrypterTest.bytes(Crypter.SALT_LENGTH_BYTES);
+        assertArrayEquals(jca(password, salt, Crypter.PBKDF2_ITERATIONS, 32),
+                kdf.derive(password, salt, Crypter.PBKDF2_ITERATIONS, 32, null));
+    }
+
+    @Test
+    public void publishesMonotonicProgressUpTo100() {
+        final List<Integer> published = new ArrayList<>();
+        kdf.derive("p".toCharArray(), new byte[16], 100000, 64, new Kdf.Progress() {
+            @Override
+            public void publish(int percent) {
+                published.add(percent);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        });
+
+        assertTrue(published.size() > 10);
+        for (int i = 1; i < published.size(); i++) {
+            assertTrue(published.get(i) >= published.get(i - 1));
+        }
+        assertEquals(100, (int) published.get(published.size() - 1));
+    }
+
+    @Test
+    public void stopsWhenCancelled() {
+        final int[] checks = {0};
+        try {
+            kdf.derive("p".toCharArray(), new byte[16], 10000000, 32, new Kdf.Progress() {
+                @Override
+                public void publish(int percent) {
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return ++checks[0] > 3;
+                }
+            });
+            fail("Not cancelled");
+        } catch (CancellationException expected) {
+            assertEquals(4, checks[0]);
+        }
+    }
+
+    @Test
+    public void stopsWhenInterruptedWithoutProgress() {
+        Thread.currentThread().interrupt();
+        try {
+            kdf.derive("p".toCharArray(), new byte[16], 10000000, 32, null);
+            fail("Not cancelled");
+        } catch (CancellationException expected) {
+            // ок
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
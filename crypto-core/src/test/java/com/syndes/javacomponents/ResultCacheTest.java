@@ -0,0 +1,110 @@
+package com.syndes.javacomponents;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Кэш результатов расшифровки: попадания, промахи, чужой пароль, clear и связка с CryptoPipeline.
+ */
+public class ResultCacheTest {
+
+    private final ResultCache cache = new ResultCache(2, 1000);
+    private final CryptoPipeline pipeline = new CryptoPipeline();
+
+    @Before
+    public void setUp() {
+        Crypter.setIterations(Crypter.MIN_ITERATIONS);
+    }
+
+    @After
+    public void tearDown() {
+        Crypter.setIterations(Crypter.PBKDF2_ITERATIONS);
+    }
+
+    /**
+     * Расшифровка так, как её делает MainActivity: get → decrypt → put.
+     */
+    private String decrypt(String key, String ciphertext) throws Exception {
+        char[] password = key.toCharArray();
+        String cached = cache.get(password, ciphertext);
+        if (cached != null) {
+            return cached;
+        }
+        String plaintext = pipeline.decrypt(key.toCharArray(), ciphertext);
+        cache.put(password, ciphertext, plaintext);
+        return plaintext;
+    }
+
+    @Test
+    public void hitsForSamePasswordAndCiphertext() throws Exception {
+        assertNull(cache.get("secret".toCharArray(), "cipher"));
+        cache.put("secret".toCharArray(), "cipher", "Привет, 世界!");
+        assertEquals("Привет, 世界!", cache.get("secret".toCharArray(), "cipher"));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void missesForOtherCiphertextOrPassword() throws Exception {
+        cache.put("secret".toCharArray(), "cipher", "text");
+        assertNull(cache.get("secret".toCharArray(), "cipher2"));
+        assertNull(cache.get("wrong".toCharArray(), "cipher"));
+        assertNull(cache.get("".toCharArray(), "cipher"));
+        assertEquals(0, cache.hits());
+        assertEquals(3, cache.misses());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        cache.put("secret".toCharArray(), "a", "1");
+        cache.put("secret".toCharArray(), "b", "2");
+        assertEquals("1", cache.get("secret".toCharArray(), "a"));
+        cache.put("secret".toCharArray(), "c", "3");
+        assertNull(cache.get("secret".toCharArray(), "b"));
+        assertEquals("1", cache.get("secret".toCharArray(), "a"));
+        assertEquals("3", cache.get("secret".toCharArray(), "c"));
+    }
+
+    @Test
+    public void skipsLongTexts() throws Exception {
+        char[] text = new char[1001];
+        java.util.Arrays.fill(text, 'x');
+        cache.put("secret".toCharArray(), "cipher", new String(text));
+        assertNull(cache.get("secret".toCharArray(), "cipher"));
+    }
+
+    @Test
+    public void clearForgetsEverything() throws Exception {
+        cache.put("secret".toCharArray(), "cipher", "text");
+        cache.clear();
+        assertNull(cache.get("secret".toCharArray(), "cipher"));
+
+        // Новые ключи сессии после clear работают как прежние.
+        cache.put("secret".toCharArray(), "cipher", "text");
+        assertEquals("text", cache.get("secret".toCharArray(), "cipher"));
+    }
+
+    @Test
+    public void hitsOnSecondDecryption() throws Exception {
+        String ciphertext = pipeline.encrypt("secret".toCharArray(), "Привет, 世界!");
+
+        assertEquals("Привет, 世界!", decrypt("secret", ciphertext));
+        assertEquals(0, cache.hits());
+        assertEquals("Привет, 世界!", decrypt("secret", ciphertext));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void missesWhenPasswordWasWipedByDecrypt() throws Exception {
+        String ciphertext = pipeline.encrypt("secret".toCharArray(), "text");
+        // Пароль, отданный decrypt, затёрт: put с ним запомнил бы текст под нулями.
+        char[] password = "secret".toCharArray();
+        cache.put(password, ciphertext, pipeline.decrypt(password, ciphertext));
+        assertNull(cache.get("secret".toCharArray(), ciphertext));
+    }
+}
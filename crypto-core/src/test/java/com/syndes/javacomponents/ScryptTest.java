@@ -0,0 +1,94 @@
+package com.syndes.javacomponents;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Контрольные значения RFC 7914, раздел 12, и отмена вычисления.
+ */
+public class ScryptTest {
+
+    private final Scrypt kdf = new Scrypt();
+
+    static byte[] hex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    private byte[] derive(String password, String salt, int cost) {
+        return kdf.derive(password.toCharArray(), salt.getBytes(StandardCharsets.US_ASCII), cost, 64, null);
+    }
+
+    // N = 1024, r = 8, p = 16: пятнадцать линий идут в пул параллельно с вызывающим потоком.
+    @Test
+    public void matchesRfcVectorWithSixteenLanes() {
+        assertArrayEquals(hex("fdbabe1c9d3472007856e7190d01e9fe7c6ad7cbc8237830e77376634b373162"
+                        + "2eaf30d92e22a3886ff109279d9830dac727afb94a83ee6d8360cbdfa2cc0640"),
+                derive("password", "NaCl", Scrypt.cost(10, 8, 16)));
+    }
+
+    // N = 16384, r = 8, p = 1: только вызывающий поток.
+    @Test
+    public void matchesRfcVectorWithOneLane() {
+        assertArrayEquals(hex("7023bdcb3afd7348461c06cd81fd38ebfda8fbba904f8e3ea9b543f6545da1f2"
+                        + "d5432955613f0fcf62d49705242a9af9e61e85dc0d651e40dfcf017b45575887"),
+                derive("pleaseletmein", "SodiumChloride", Scrypt.cost(14, 8, 1)));
+    }
+
+    // Остальные два вектора раздела 12 вне допустимых параметров: N = 16 слишком слаб,
+    // N = 2^20 при r = 8 требует 1 ГиБ на линию.
+    @Test
+    public void rejectsParametersOutsideLimits() {
+        for (int[] parameters : new int[][]{{4, 1, 1}, {20, 8, 1}}) {
+            try {
+                Scrypt.cost(parameters[0], parameters[1], parameters[2]);
+                fail("Accepted N = 2^" + parameters[0]);
+            } catch (IllegalArgumentException expected) {
+                // ок
+            }
+        }
+    }
+
+    @Test
+    public void stopsWhenCancelled() {
+        final int[] last = {-1};
+        try {
+            kdf.derive("p".toCharArray(), new byte[1], Scrypt.cost(16, 8, 4), 32, new Kdf.Progress() {
+                @Override
+                public void publish(int percent) {
+                    last[0] = percent;
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return last[0] >= 30;
+                }
+            });
+            fail("Not cancelled");
+        } catch (CancellationException expected) {
+            assertEquals(30, last[0], 5);
+        }
+    }
+
+    @Test
+    public void stopsWhenInterruptedWithoutProgress() {
+        Thread.currentThread().interrupt();
+        try {
+            kdf.derive("p".toCharArray(), new byte[1], Scrypt.cost(16, 8, 4), 32, null);
+            fail("Not cancelled");
+        } catch (CancellationException expected) {
+            // ок
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
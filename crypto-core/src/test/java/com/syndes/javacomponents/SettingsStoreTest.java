@@ -0,0 +1,130 @@
+package com.syndes.javacomponents;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+/**
+ * Запись и чтение SettingsStore, резервная копия и восстановление повреждённого файла.
+ */
+public class SettingsStoreTest {
+
+    private File directory;
+    private File file;
+    private File backup;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("settings").toFile();
+        file = new File(directory, "settings.bin");
+        backup = new File(directory, "settings.bin.bak");
+    }
+
+    @After
+    public void tearDown() {
+        for (File child : directory.listFiles()) {
+            child.delete();
+        }
+        directory.delete();
+    }
+
+    private static void corrupt(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(raf.length() / 2);
+            int b = raf.read();
+            raf.seek(raf.length() / 2);
+            raf.write(b ^ 1);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void save(int version) throws IOException {
+        SettingsStore.open(file).edit()
+                .putInt("version", version)
+                .putString("name", "настройки " + version)
+                .putBytes("record", CrypterTest.bytes(version))
+                .commit();
+    }
+
+    @Test
+    public void roundTrips() throws IOException {
+        assertFalse(SettingsStore.open(file).exists());
+        save(10);
+        SettingsStore store = SettingsStore.open(file);
+        assertTrue(store.exists());
+        assertFalse(store.isRestored());
+        assertEquals(10, store.getInt("version", 0));
+        assertEquals("настройки 10", store.getString("name", null));
+        assertArrayEquals(CrypterTest.bytes(10), store.getBytes("record"));
+
+        store.edit().remove("name").commit();
+        assertFalse(SettingsStore.open(file).contains("name"));
+    }
+
+    @Test
+    public void keepsPreviousVersionAsBackup() throws IOException {
+        save(1);
+        assertFalse(backup.exists());
+        save(2);
+        assertEquals(1, SettingsStore.open(backup).getInt("version", 0));
+        assertEquals(2, SettingsStore.open(file).getInt("version", 0));
+    }
+
+    @Test
+    public void restoresBackupOfCorruptedFile() throws IOException {
+        save(1);
+        save(2);
+        corrupt(file);
+
+        SettingsStore store = SettingsStore.open(file);
+        assertTrue(store.isRestored());
+        assertEquals(1, store.getInt("version", 0));
+
+        // Повреждённый файл не затирает исправную копию.
+        store.edit().putInt("version", 3).commit();
+        assertEquals(1, SettingsStore.open(backup).getInt("version", 0));
+        assertEquals(3, SettingsStore.open(file).getInt("version", 0));
+        store.edit().putInt("version", 4).commit();
+        assertEquals(3, SettingsStore.open(backup).getInt("version", 0));
+    }
+
+    @Test
+    public void readsBackupWhenFileIsMissing() throws IOException {
+        save(1);
+        save(2);
+        // Как после сбоя между двумя rename.
+        assertTrue(file.delete());
+
+        SettingsStore store = SettingsStore.open(file);
+        assertTrue(store.exists());
+        assertFalse(store.isRestored());
+        assertEquals(1, store.getInt("version", 0));
+    }
+
+    @Test
+    public void failsWhenFileAndBackupAreCorrupted() throws IOException {
+        save(1);
+        save(2);
+        corrupt(file);
+        corrupt(backup);
+        try {
+            SettingsStore.open(file);
+            fail("Corrupted settings accepted");
+        } catch (IOException expected) {
+            assertEquals(1, expected.getSuppressed().length);
+        }
+    }
+}